@@ -0,0 +1,151 @@
+package com.github.pdf_view.render;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.os.ParcelFileDescriptor;
+import android.support.test.InstrumentationRegistry;
+import android.support.test.runner.AndroidJUnit4;
+import android.util.Log;
+
+import com.shockwave.pdfium.PdfDocument;
+import com.shockwave.pdfium.PdfiumCore;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Content tile throughput of {@link RenderScheduler} with 1, 2, 4 and 8 workers. Every tile is
+ * rasterized by pdfium and then goes through uniform detection and ALPHA_8 conversion, like a
+ * content tile of a grayscale page. Results are logged with the {@code RenderThroughput} tag.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+@RunWith(AndroidJUnit4.class)
+public class RenderThroughputBenchmark {
+
+    private static final String TAG = "RenderThroughput";
+    private static final String DOCUMENT = "benchmark.pdf";
+    private static final int[] WORKER_COUNTS = {1, 2, 4, 8};
+    private static final int TILE_SIZE = 256;
+    private static final int PAGE_WIDTH = 1440;
+    private static final int TILES_PER_RUN = 120;
+
+    private PdfiumCore pdfium;
+    private PdfDocument document;
+    private int pageCount;
+    private final UniformTileDetector uniformTileDetector = new UniformTileDetector();
+    private final GrayscaleDetector grayscaleDetector = new GrayscaleDetector();
+
+    @Before
+    public void setUp() throws IOException {
+        Context context = InstrumentationRegistry.getTargetContext();
+        File file = new File(context.getCacheDir(), DOCUMENT);
+        copyAsset(InstrumentationRegistry.getContext(), DOCUMENT, file);
+        pdfium = new PdfiumCore(context);
+        document = pdfium.newDocument(
+                ParcelFileDescriptor.open(file, ParcelFileDescriptor.MODE_READ_ONLY), null);
+        pageCount = pdfium.getPageCount(document);
+        for (int i = 0; i < pageCount; i++) {
+            pdfium.openPage(document, i);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        pdfium.closeDocument(document);
+    }
+
+    @Test
+    public void tileThroughput() throws InterruptedException {
+        // warm up pdfium caches and the JIT
+        run(1);
+        for (int workers : WORKER_COUNTS) {
+            long start = System.nanoTime();
+            run(workers);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            Log.i(TAG, String.format(Locale.US, "%d workers: %.1f tiles/s", workers, TILES_PER_RUN / seconds));
+        }
+    }
+
+    private void run(int workers) throws InterruptedException {
+        RenderScheduler scheduler = new RenderScheduler(workers, new RenderStats());
+        CountDownLatch done = new CountDownLatch(TILES_PER_RUN);
+        for (int i = 0; i < TILES_PER_RUN; i++) {
+            scheduler.submit(new TileRequest(i, done));
+        }
+        try {
+            assertTrue("Tiles were not rendered in time", done.await(2, TimeUnit.MINUTES));
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+    private class TileRequest extends RenderRequest {
+
+        private final int tile;
+        private final CountDownLatch done;
+
+        TileRequest(int tile, CountDownLatch done) {
+            this.tile = tile;
+            this.done = done;
+        }
+
+        @Override
+        protected void render() {
+            int page = tile % pageCount;
+            int pageHeight = PAGE_WIDTH * pdfium.getPageHeight(document, page)
+                    / pdfium.getPageWidth(document, page);
+            int columns = PAGE_WIDTH / TILE_SIZE;
+            int column = (tile / pageCount) % columns;
+            int row = (tile / pageCount / columns) % (pageHeight / TILE_SIZE);
+            Bitmap bmp = Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ARGB_8888);
+            Bitmap alpha = Bitmap.createBitmap(TILE_SIZE, TILE_SIZE, Bitmap.Config.ALPHA_8);
+            pdfium.renderPageBitmap(document, bmp, page, -column * TILE_SIZE, -row * TILE_SIZE,
+                    PAGE_WIDTH, pageHeight);
+            if(!uniformTileDetector.isUniform(bmp)) {
+                grayscaleDetector.convertToAlpha(bmp, alpha);
+            }
+            bmp.recycle();
+            alpha.recycle();
+        }
+
+        @Override
+        protected void onRendered() {
+            done.countDown();
+        }
+
+        @Override
+        protected long computePriority() {
+            return tile;
+        }
+    }
+
+    private static void copyAsset(Context context, String name, File target) throws IOException {
+        InputStream in = context.getAssets().open(name);
+        OutputStream out = new FileOutputStream(target);
+        try {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                out.write(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+}
@@ -5,6 +5,7 @@ import android.animation.ValueAnimator;
 import android.annotation.TargetApi;
 import android.content.Context;
 import android.graphics.Canvas;
+import android.graphics.Rect;
 import android.net.Uri;
 import android.os.Build;
 import android.os.Bundle;
@@ -90,6 +91,13 @@ public class PdfView extends View implements NestedScrollingChild, PdfViewRender
         return state;
     }
 
+    /**
+     * Returns snapshot of render pipeline statistics or {@code null} if no document is loaded.
+     */
+    public PdfViewStats getStats() {
+        return pdfViewRenderer == null ? null : pdfViewRenderer.getStats();
+    }
+
     public void beginScale() {
         setState(State.ZOOM);
     }
@@ -213,8 +221,12 @@ public class PdfView extends View implements NestedScrollingChild, PdfViewRender
     }
 
     @Override
-    public void onPageUpdated() {
-        invalidate();
+    public void onPageUpdated(Rect dirty) {
+        if(dirty == null) {
+            invalidate();
+        } else {
+            invalidate(dirty);
+        }
     }
 
     @Override
@@ -233,6 +245,10 @@ public class PdfView extends View implements NestedScrollingChild, PdfViewRender
         if(state != State.ZOOM) {
             result |= dragGestureDetector.onTouchEvent(event);
         }
+        int action = event.getAction();
+        if((action == MotionEvent.ACTION_UP || action == MotionEvent.ACTION_CANCEL) && scroller.isFinished()) {
+            pdfViewRenderer.finishScroll();
+        }
         return result;
     }
 
@@ -330,6 +346,7 @@ public class PdfView extends View implements NestedScrollingChild, PdfViewRender
         scroller.fling(pdfViewRenderer.getScrollX(), pdfViewRenderer.getScrollY(), velocityX, velocityY,
                 0, pdfViewRenderer.getHorizontalScrollRange(),
                 0, Integer.MAX_VALUE);
+        pdfViewRenderer.startFling(scroller.getFinalX(), scroller.getFinalY());
         flingTask = new FlingTask(this, scroller);
         ViewCompat.postOnAnimation(this, flingTask);
         return true;
@@ -349,6 +366,7 @@ public class PdfView extends View implements NestedScrollingChild, PdfViewRender
             scroller.computeScrollOffset();
             if(scroller.isFinished()) {
                 pdfView.setState(State.IDLE);
+                pdfView.pdfViewRenderer.finishFling();
                 pdfView.pdfViewRenderer.updateQuality();
                 return;
             }
@@ -360,6 +378,7 @@ public class PdfView extends View implements NestedScrollingChild, PdfViewRender
         public void cancel() {
             super.cancel();
             scroller.forceFinished(true);
+            pdfView.pdfViewRenderer.finishFling();
             pdfView.pdfViewRenderer.updateQuality();
             pdfView.setState(State.IDLE);
         }
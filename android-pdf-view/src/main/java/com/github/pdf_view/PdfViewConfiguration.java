@@ -1,6 +1,7 @@
 package com.github.pdf_view;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.net.Uri;
 
 import com.github.pdf_view.render.PdfViewRenderer;
@@ -24,6 +25,8 @@ public class PdfViewConfiguration {
     public static final float DEFAULT_DOUBLE_TAP_SCALE = 3F;
     public static final float DEFAULT_MAX_ZOOM = 10F;
     private static final float MIN_SUPPORTED_ZOOM = 0.2F;
+    public static final long DEFAULT_DISK_TILE_CACHE_SIZE = 0;
+    public static final int DEFAULT_RENDER_THREAD_COUNT = 2;
 
     private float doubleTapScale = DEFAULT_DOUBLE_TAP_SCALE;
 
@@ -35,6 +38,13 @@ public class PdfViewConfiguration {
     private float minScale = MIN_SUPPORTED_ZOOM;
     private float maxScale = DEFAULT_MAX_ZOOM;
     private OnScaleListener onScaleListener;
+    private long diskTileCacheSize = DEFAULT_DISK_TILE_CACHE_SIZE;
+    private int compressedTileCacheSize;
+    private Bitmap.Config contentBitmapConfig = Bitmap.Config.ARGB_8888;
+    private Bitmap.Config thumbnailBitmapConfig = Bitmap.Config.ARGB_8888;
+    private int renderThreadCount = DEFAULT_RENDER_THREAD_COUNT;
+    private boolean progressiveRendering;
+    private boolean restoreLastPosition;
 
     public PdfViewConfiguration(Context context, PdfViewRenderer.PdfRendererListener pdfRendererListener) {
         renderer = new PdfViewRenderer(context, pdfRendererListener);
@@ -128,6 +138,104 @@ public class PdfViewConfiguration {
         return this;
     }
 
+    /**
+     * Sets size limit in bytes of the on-disk tile cache, 0 (default) disables it. Tiles are stored
+     * as unencrypted pixels, so the cache is never used for password protected documents.
+     */
+    public PdfViewConfiguration setDiskTileCacheSize(long diskTileCacheSize) {
+        this.diskTileCacheSize = diskTileCacheSize;
+        return this;
+    }
+
+    public long getDiskTileCacheSize() {
+        return diskTileCacheSize;
+    }
+
+    /**
+     * Sets size limit in kilobytes of the compressed in-memory tier that keeps tiles evicted from the
+     * rendered tile cache, 0 (default) disables it.
+     */
+    public PdfViewConfiguration setCompressedTileCacheSize(int compressedTileCacheSize) {
+        this.compressedTileCacheSize = compressedTileCacheSize;
+        return this;
+    }
+
+    public int getCompressedTileCacheSize() {
+        return compressedTileCacheSize;
+    }
+
+    /**
+     * Sets pixel format of content tiles, {@link Bitmap.Config#RGB_565} halves tile memory.
+     */
+    public PdfViewConfiguration setContentBitmapConfig(Bitmap.Config contentBitmapConfig) {
+        this.contentBitmapConfig = checkBitmapConfig(contentBitmapConfig);
+        return this;
+    }
+
+    public Bitmap.Config getContentBitmapConfig() {
+        return contentBitmapConfig;
+    }
+
+    /**
+     * Sets pixel format of page thumbnails, {@link Bitmap.Config#RGB_565} halves thumbnail memory.
+     */
+    public PdfViewConfiguration setThumbnailBitmapConfig(Bitmap.Config thumbnailBitmapConfig) {
+        this.thumbnailBitmapConfig = checkBitmapConfig(thumbnailBitmapConfig);
+        return this;
+    }
+
+    public Bitmap.Config getThumbnailBitmapConfig() {
+        return thumbnailBitmapConfig;
+    }
+
+    /**
+     * Sets number of render workers. Pdfium calls are serialized, extra workers overlap cache, disk
+     * and decompression work of one tile with rasterization of another.
+     */
+    public PdfViewConfiguration setRenderThreadCount(int renderThreadCount) {
+        if(renderThreadCount < 1) {
+            throw new IllegalArgumentException("Render thread count must be positive: " + renderThreadCount);
+        }
+        this.renderThreadCount = renderThreadCount;
+        return this;
+    }
+
+    public int getRenderThreadCount() {
+        return renderThreadCount;
+    }
+
+    /**
+     * Enables progressive rendering: after zooming the visible area of each page is first rendered
+     * in one pass at half of the target scale, then refined with full resolution tiles.
+     */
+    public PdfViewConfiguration setProgressiveRendering(boolean progressiveRendering) {
+        this.progressiveRendering = progressiveRendering;
+        return this;
+    }
+
+    public boolean isProgressiveRendering() {
+        return progressiveRendering;
+    }
+
+    /**
+     * Opens a previously viewed document at the page, offset and scale it was closed at instead of
+     * the start page.
+     */
+    public PdfViewConfiguration setRestoreLastPosition(boolean restoreLastPosition) {
+        this.restoreLastPosition = restoreLastPosition;
+        return this;
+    }
+
+    public boolean isRestoreLastPosition() {
+        return restoreLastPosition;
+    }
+
+    private static Bitmap.Config checkBitmapConfig(Bitmap.Config config) {
+        if(config != Bitmap.Config.ARGB_8888 && config != Bitmap.Config.RGB_565) {
+            throw new IllegalArgumentException("Unsupported bitmap config " + config);
+        }
+        return config;
+    }
 
     public void notifyError(IOException e) {
         if(onErrorListener != null) {
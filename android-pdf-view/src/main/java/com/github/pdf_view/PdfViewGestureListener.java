@@ -12,6 +12,8 @@ import android.view.ScaleGestureDetector;
 class PdfViewGestureListener extends GestureDetector.SimpleOnGestureListener implements ScaleGestureDetector.OnScaleGestureListener {
     private final PdfView pdfView;
     private final float doubleTapScale;
+    private final int[] scrollConsumed = new int[2];
+    private final int[] scrollOffset = new int[2];
 
     public PdfViewGestureListener(PdfView pdfView, float doubleTapScale) {
         this.pdfView = pdfView;
@@ -82,8 +84,10 @@ class PdfViewGestureListener extends GestureDetector.SimpleOnGestureListener imp
     }
 
     private boolean handleScroll(int dx, int dy) {
-        int[] consumed = new int[2];
-        int[] offset = new int[2];
+        int[] consumed = scrollConsumed;
+        int[] offset = scrollOffset;
+        consumed[0] = consumed[1] = 0;
+        offset[0] = offset[1] = 0;
         if(ViewCompat.dispatchNestedPreScroll(pdfView, dx, dy, consumed, offset)){
             dx -= consumed[0];
             dy -= consumed[1];
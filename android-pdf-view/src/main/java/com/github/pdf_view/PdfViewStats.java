@@ -0,0 +1,248 @@
+package com.github.pdf_view;
+
+/**
+ * Immutable snapshot of render pipeline statistics, see {@link PdfView#getStats()}. Counters are
+ * cumulative since the document was loaded.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+public class PdfViewStats {
+
+    private final long[] latencyBounds;
+    private final long[] thumbnailLatencies;
+    private final long[] contentLatencies;
+    private final long tilesRendered;
+    private final long tilesCancelled;
+    private final long tilesWasted;
+    private final int poolHits;
+    private final int poolMisses;
+    private final long poolFreeBytes;
+    private final long bitmapBytesInUse;
+    private final int resolvedPages;
+    private final int pageCount;
+    private final long pdfiumCpuTime;
+    private final int frameCount;
+    private final float averageFrameUpdates;
+    private final int compressedHits;
+    private final int compressedMisses;
+    private final long averageCompressNanos;
+    private final long averageDecompressNanos;
+    private final float compressionRatio;
+
+    private PdfViewStats(Builder builder) {
+        latencyBounds = builder.latencyBounds;
+        thumbnailLatencies = builder.thumbnailLatencies;
+        contentLatencies = builder.contentLatencies;
+        tilesRendered = builder.tilesRendered;
+        tilesCancelled = builder.tilesCancelled;
+        tilesWasted = builder.tilesWasted;
+        poolHits = builder.poolHits;
+        poolMisses = builder.poolMisses;
+        poolFreeBytes = builder.poolFreeBytes;
+        bitmapBytesInUse = builder.bitmapBytesInUse;
+        resolvedPages = builder.resolvedPages;
+        pageCount = builder.pageCount;
+        pdfiumCpuTime = builder.pdfiumCpuTime;
+        frameCount = builder.frameCount;
+        averageFrameUpdates = builder.averageFrameUpdates;
+        compressedHits = builder.compressedHits;
+        compressedMisses = builder.compressedMisses;
+        averageCompressNanos = builder.averageCompressNanos;
+        averageDecompressNanos = builder.averageDecompressNanos;
+        compressionRatio = builder.compressionRatio;
+    }
+
+    /**
+     * Upper bounds in milliseconds of latency histogram buckets. Histograms have one more bucket for
+     * latencies above the last bound.
+     */
+    public long[] getLatencyBounds() {
+        return latencyBounds.clone();
+    }
+
+    /**
+     * Histogram of thumbnail latencies from request to rendered bitmap.
+     */
+    public long[] getThumbnailLatencies() {
+        return thumbnailLatencies.clone();
+    }
+
+    /**
+     * Histogram of content tile latencies from request to rendered bitmap.
+     */
+    public long[] getContentLatencies() {
+        return contentLatencies.clone();
+    }
+
+    public long getTilesRendered() {
+        return tilesRendered;
+    }
+
+    /**
+     * Tiles dropped from the render queue before rendering started.
+     */
+    public long getTilesCancelled() {
+        return tilesCancelled;
+    }
+
+    /**
+     * Tiles rendered after they were no longer needed.
+     */
+    public long getTilesWasted() {
+        return tilesWasted;
+    }
+
+    public float getPoolHitRate() {
+        int requests = poolHits + poolMisses;
+        return requests == 0 ? 0 : (float) poolHits / requests;
+    }
+
+    /**
+     * Bytes held by free bitmaps waiting in the pool for reuse.
+     */
+    public long getPoolFreeBytes() {
+        return poolFreeBytes;
+    }
+
+    /**
+     * Bytes held by bitmaps taken from the pool or newly allocated and not returned yet: visible
+     * tiles, thumbnails and tiles cached in memory.
+     */
+    public long getBitmapBytesInUse() {
+        return bitmapBytesInUse;
+    }
+
+    public int getResolvedPages() {
+        return resolvedPages;
+    }
+
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    /**
+     * CPU time in nanoseconds spent by render workers inside pdfium.
+     */
+    public long getPdfiumCpuTime() {
+        return pdfiumCpuTime;
+    }
+
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Average number of view updates coalesced into one frame.
+     */
+    public float getAverageFrameUpdates() {
+        return averageFrameUpdates;
+    }
+
+    /**
+     * Hit rate of the compressed tile tier, 0 when it is disabled.
+     */
+    public float getCompressedHitRate() {
+        int requests = compressedHits + compressedMisses;
+        return requests == 0 ? 0 : (float) compressedHits / requests;
+    }
+
+    public int getCompressedHits() {
+        return compressedHits;
+    }
+
+    public int getCompressedMisses() {
+        return compressedMisses;
+    }
+
+    public long getAverageCompressNanos() {
+        return averageCompressNanos;
+    }
+
+    public long getAverageDecompressNanos() {
+        return averageDecompressNanos;
+    }
+
+    /**
+     * Raw to compressed size ratio of tiles in the compressed tier.
+     */
+    public float getCompressionRatio() {
+        return compressionRatio;
+    }
+
+    public static class Builder {
+        private long[] latencyBounds = new long[0];
+        private long[] thumbnailLatencies = new long[0];
+        private long[] contentLatencies = new long[0];
+        private long tilesRendered;
+        private long tilesCancelled;
+        private long tilesWasted;
+        private int poolHits;
+        private int poolMisses;
+        private long poolFreeBytes;
+        private long bitmapBytesInUse;
+        private int resolvedPages;
+        private int pageCount;
+        private long pdfiumCpuTime;
+        private int frameCount;
+        private float averageFrameUpdates;
+        private int compressedHits;
+        private int compressedMisses;
+        private long averageCompressNanos;
+        private long averageDecompressNanos;
+        private float compressionRatio;
+
+        public Builder setLatencies(long[] latencyBounds, long[] thumbnailLatencies, long[] contentLatencies) {
+            this.latencyBounds = latencyBounds;
+            this.thumbnailLatencies = thumbnailLatencies;
+            this.contentLatencies = contentLatencies;
+            return this;
+        }
+
+        public Builder setTiles(long rendered, long cancelled, long wasted) {
+            this.tilesRendered = rendered;
+            this.tilesCancelled = cancelled;
+            this.tilesWasted = wasted;
+            return this;
+        }
+
+        public Builder setPool(int hits, int misses, long freeBytes, long bytesInUse) {
+            this.poolHits = hits;
+            this.poolMisses = misses;
+            this.poolFreeBytes = freeBytes;
+            this.bitmapBytesInUse = bytesInUse;
+            return this;
+        }
+
+        public Builder setPages(int resolvedPages, int pageCount) {
+            this.resolvedPages = resolvedPages;
+            this.pageCount = pageCount;
+            return this;
+        }
+
+        public Builder setPdfiumCpuTime(long pdfiumCpuTime) {
+            this.pdfiumCpuTime = pdfiumCpuTime;
+            return this;
+        }
+
+        public Builder setFrames(int frameCount, float averageFrameUpdates) {
+            this.frameCount = frameCount;
+            this.averageFrameUpdates = averageFrameUpdates;
+            return this;
+        }
+
+        public Builder setCompressedTier(int hits, int misses, long averageCompressNanos,
+                                         long averageDecompressNanos, float compressionRatio) {
+            this.compressedHits = hits;
+            this.compressedMisses = misses;
+            this.averageCompressNanos = averageCompressNanos;
+            this.averageDecompressNanos = averageDecompressNanos;
+            this.compressionRatio = compressionRatio;
+            return this;
+        }
+
+        public PdfViewStats build() {
+            return new PdfViewStats(this);
+        }
+    }
+}
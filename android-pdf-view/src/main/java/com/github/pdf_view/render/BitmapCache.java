@@ -1,91 +1,186 @@
 package com.github.pdf_view.render;
 
+import android.annotation.TargetApi;
 import android.graphics.Bitmap;
-import android.graphics.Point;
+import android.os.Build;
 import android.support.v4.graphics.BitmapCompat;
-import android.util.Log;
 
-import java.util.LinkedHashMap;
-import java.util.LinkedList;
-import java.util.Map;
+import com.github.pdf_view.utils.RenderTrace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Pool of free bitmaps striped by pixel format and allocation size class. Class {@code n} holds
+ * bitmaps whose allocation is in {@code [2^n, 2^(n+1))} bytes. Starting from KitKat any pooled bitmap
+ * of the same format that is big enough is reshaped with {@link Bitmap#reconfigure}, on older
+ * platforms only exact sizes are reused. Bitmaps of different formats are never mixed.
+ * <p>
+ * Every stripe is a lock-free queue, so render threads taking bitmaps and the UI thread returning
+ * them do not block each other. Over the budget bitmaps are evicted round robin across stripes,
+ * oldest first within a stripe.
+ *
  * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
  * @since Oct 03, 2016
  */
 public class BitmapCache {
 
-    private LinkedHashMap<Point, LinkedList<Bitmap>> sizedCache = new LinkedHashMap<>(0, 0.75f, true);
+    private static final int SIZE_CLASSES = 32;
+    private static final int MAX_PROBES = 4;
+    private static final Bitmap.Config[] CONFIGS = Bitmap.Config.values();
+
+    private final ConcurrentLinkedQueue<Bitmap>[] stripes;
+
+    private final long maxSize;
+
+    private final AtomicLong currentSize = new AtomicLong();
+    private final AtomicInteger evictionCursor = new AtomicInteger();
 
-    private final int maxSize;
+    private final AtomicInteger hitCount = new AtomicInteger();
+    private final AtomicInteger missCount = new AtomicInteger();
+    private final AtomicInteger reconfigureCount = new AtomicInteger();
 
+    @SuppressWarnings("unchecked")
     public BitmapCache(int maxSize) {
-        this.maxSize = maxSize;
+        this.maxSize = maxSize * 1024L;
+        stripes = new ConcurrentLinkedQueue[CONFIGS.length * SIZE_CLASSES];
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new ConcurrentLinkedQueue<>();
+        }
     }
 
-    public synchronized Bitmap peek(Point size) {
-        if(!sizedCache.containsKey(size)) {
+    public Bitmap peek(int width, int height, Bitmap.Config config) {
+        int requiredSize = width * height * bytesPerPixel(config);
+        int sizeClass = sizeClassOf(requiredSize);
+        Bitmap result = take(stripe(config, sizeClass), width, height, requiredSize);
+        if(result == null && canReconfigure() && sizeClass + 1 < SIZE_CLASSES) {
+            result = take(stripe(config, sizeClass + 1), width, height, requiredSize);
+        }
+        if(result == null) {
+            missCount.incrementAndGet();
             return null;
         }
-        LinkedList<Bitmap> cached = sizedCache.get(size);
-        Bitmap result = cached.removeFirst();
-        if(cached.size() == 0) {
-            sizedCache.remove(size);
-        } else {
-            sizedCache.remove(size);
-            sizedCache.put(size, cached);
+        hitCount.incrementAndGet();
+        if(result.getWidth() != width || result.getHeight() != height) {
+            reconfigure(result, width, height, config);
+            reconfigureCount.incrementAndGet();
         }
         return result;
     }
 
-    public synchronized void put(Point size, Bitmap bmp) {
-        if(sizedCache.containsKey(size)) {
-            sizedCache.get(size).push(bmp);
-        } else {
-            LinkedList<Bitmap> cached = new LinkedList<>();
-            cached.add(bmp);
-            sizedCache.remove(size);
-            sizedCache.put(size, cached);
+    public void put(Bitmap bmp) {
+        int allocation = BitmapCompat.getAllocationByteCount(bmp);
+        stripe(bmp.getConfig(), sizeClassOf(allocation)).offer(bmp);
+        if(currentSize.addAndGet(allocation) >= maxSize) {
+            trimToSize(maxSize);
         }
-        trimToSize(maxSize);
     }
 
-    private void trimToSize(int maxSize) {
-        long size = computeSize();
-        if(size < maxSize || sizedCache.isEmpty()) {
-            return;
+    private ConcurrentLinkedQueue<Bitmap> stripe(Bitmap.Config config, int sizeClass) {
+        return stripes[config.ordinal() * SIZE_CLASSES + sizeClass];
+    }
+
+    private Bitmap take(ConcurrentLinkedQueue<Bitmap> stripe, int width, int height, int requiredSize) {
+        Bitmap result = null;
+        List<Bitmap> misfits = null;
+        for (int i = 0; i < MAX_PROBES && result == null; i++) {
+            Bitmap candidate = stripe.poll();
+            if(candidate == null) {
+                break;
+            }
+            if(fits(candidate, width, height, requiredSize)) {
+                result = candidate;
+            } else {
+                if(misfits == null) {
+                    misfits = new ArrayList<>(MAX_PROBES);
+                }
+                misfits.add(candidate);
+            }
+        }
+        if(misfits != null) {
+            stripe.addAll(misfits);
+        }
+        if(result != null) {
+            currentSize.addAndGet(-BitmapCompat.getAllocationByteCount(result));
         }
+        return result;
+    }
 
-        Map.Entry<Point, LinkedList<Bitmap>> toEvict
-                = sizedCache.entrySet().iterator().next();
-        Bitmap bmp = toEvict.getValue().removeFirst();
-        bmp.recycle();
-        if(toEvict.getValue().size() == 0) {
-            sizedCache.remove(toEvict.getKey());
+    private boolean fits(Bitmap candidate, int width, int height, int requiredSize) {
+        if(canReconfigure()) {
+            return BitmapCompat.getAllocationByteCount(candidate) >= requiredSize;
         }
-        trimToSize(maxSize);
+        return candidate.getWidth() == width && candidate.getHeight() == height;
     }
 
-    private long computeSize() {
-        int size = 0;
-        for (Map.Entry<Point, LinkedList<Bitmap>> entries : sizedCache.entrySet()) {
-            for (Bitmap bitmap : entries.getValue()) {
-               size += BitmapCompat.getAllocationByteCount(bitmap);
+    private void trimToSize(long maxSize) {
+        int emptyStripes = 0;
+        while (currentSize.get() >= maxSize && emptyStripes < stripes.length) {
+            int index = (evictionCursor.getAndIncrement() & Integer.MAX_VALUE) % stripes.length;
+            Bitmap bmp = stripes[index].poll();
+            if(bmp == null) {
+                emptyStripes++;
+                continue;
             }
+            emptyStripes = 0;
+            currentSize.addAndGet(-BitmapCompat.getAllocationByteCount(bmp));
+            bmp.recycle();
+        }
+    }
+
+    private static int sizeClassOf(int allocation) {
+        return 31 - Integer.numberOfLeadingZeros(Math.max(allocation, 1));
+    }
+
+    static int bytesPerPixel(Bitmap.Config config) {
+        switch (config) {
+            case ALPHA_8:
+                return 1;
+            case RGB_565:
+            case ARGB_4444:
+                return 2;
+            default:
+                return 4;
         }
-        return size / 1024;
     }
 
-    public synchronized void evictAll() {
-        Log.wtf("Okaminskyi", "Statr Recycling ");
-        for (Map.Entry<Point, LinkedList<Bitmap>> entries : sizedCache.entrySet()) {
-            for (Bitmap bitmap : entries.getValue()) {
-                Log.wtf("Okaminskyi", "Recycled ");
+    private static boolean canReconfigure() {
+        return Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT;
+    }
+
+    @TargetApi(Build.VERSION_CODES.KITKAT)
+    private static void reconfigure(Bitmap bmp, int width, int height, Bitmap.Config config) {
+        bmp.reconfigure(width, height, config);
+    }
+
+    public long getSize() {
+        return currentSize.get();
+    }
+
+    public int getHitCount() {
+        return hitCount.get();
+    }
+
+    public int getMissCount() {
+        return missCount.get();
+    }
+
+    public int getReconfigureCount() {
+        return reconfigureCount.get();
+    }
+
+    public void evictAll() {
+        RenderTrace.begin(RenderTrace.RECYCLE);
+        for (ConcurrentLinkedQueue<Bitmap> stripe : stripes) {
+            Bitmap bitmap;
+            while ((bitmap = stripe.poll()) != null) {
+                currentSize.addAndGet(-BitmapCompat.getAllocationByteCount(bitmap));
                 bitmap.recycle();
             }
         }
-        Log.wtf("Okaminskyi", "Finish Recycling ");
-        sizedCache.clear();
+        RenderTrace.end();
     }
 }
-
@@ -0,0 +1,241 @@
+package com.github.pdf_view.render;
+
+import android.graphics.Bitmap;
+import android.os.Process;
+import android.support.v4.util.LruCache;
+
+import com.github.pdf_view.utils.Lz4Codec;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Secondary in-memory tier that keeps tiles evicted from {@link TileCache} LZ4 compressed under its
+ * own byte budget. Compression runs on a background thread, decompression on the render thread
+ * that asks for the tile, into a buffer of that thread, so render workers decompress in parallel.
+ * <p>
+ * Tiles waiting for compression still hold their full size bitmaps, so only a few may be queued and
+ * their raw size counts against the budget. Tiles that do not fit are returned to the pool at once.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 19, 2016
+ */
+public class CompressedTileCache {
+
+    private static final int MAX_PENDING_TILES = 4;
+
+    private final LruCache<TileKey, CompressedTile> tiles;
+    private final int maxSize;
+
+    private final ExecutorService compressExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(MAX_PENDING_TILES), new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, CompressedTileCache.class.getSimpleName());
+        }
+    });
+
+    private final Lz4Codec codec = new Lz4Codec();
+    private ByteBuffer compressBuffer = ByteBuffer.allocate(0);
+    private byte[] compressed = new byte[0];
+    private final ThreadLocal<ByteBuffer> decompressBuffers = new ThreadLocal<>();
+
+    private int hitCount;
+    private int missCount;
+    private long compressedCount;
+    private long compressNanos;
+    private long decompressedCount;
+    private long decompressNanos;
+    private long rawBytes;
+    private long compressedBytes;
+    private int pendingTiles;
+    private int pendingSize;
+
+    public CompressedTileCache(int maxSize) {
+        this.maxSize = maxSize;
+        tiles = new LruCache<TileKey, CompressedTile>(maxSize) {
+            @Override
+            protected int sizeOf(TileKey key, CompressedTile value) {
+                return Math.max(value.data.length / 1024, 1);
+            }
+        };
+    }
+
+    /**
+     * Compresses tile in background and hands its bitmap back to {@code tileCache} afterwards. The
+     * bitmap is handed back right away if too many tiles are waiting or it does not fit the budget.
+     */
+    public void add(final TileKey key, final Bitmap bmp, final TileCache tileCache) {
+        final int rawSize = Math.max(bmp.getRowBytes() * bmp.getHeight() / 1024, 1);
+        synchronized (this) {
+            if(pendingTiles >= MAX_PENDING_TILES || pendingSize + rawSize > maxSize) {
+                tileCache.release(bmp);
+                return;
+            }
+            pendingTiles++;
+            pendingSize += rawSize;
+        }
+        trimToBudget();
+        try {
+            compressExecutor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        tiles.put(key, compress(bmp));
+                    } finally {
+                        tileCache.release(bmp);
+                        finishPending(rawSize);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // shut down
+            tileCache.release(bmp);
+            finishPending(rawSize);
+        }
+    }
+
+    private void finishPending(int rawSize) {
+        synchronized (this) {
+            pendingTiles--;
+            pendingSize -= rawSize;
+        }
+        trimToBudget();
+    }
+
+    /**
+     * Evicts compressed tiles so they fit the budget together with tiles waiting for compression.
+     */
+    private void trimToBudget() {
+        int pending;
+        synchronized (this) {
+            pending = pendingSize;
+        }
+        tiles.trimToSize(Math.max(maxSize - pending, 0));
+    }
+
+    private CompressedTile compress(Bitmap bmp) {
+        long start = System.nanoTime();
+        int rawLength = bmp.getRowBytes() * bmp.getHeight();
+        if(compressBuffer.capacity() < rawLength) {
+            compressBuffer = ByteBuffer.allocate(rawLength);
+            compressed = new byte[Lz4Codec.maxCompressedLength(rawLength)];
+        }
+        compressBuffer.clear();
+        bmp.copyPixelsToBuffer(compressBuffer);
+        int length = codec.compress(compressBuffer.array(), rawLength, compressed);
+        byte[] data = new byte[length];
+        System.arraycopy(compressed, 0, data, 0, length);
+        synchronized (this) {
+            compressNanos += System.nanoTime() - start;
+            compressedCount++;
+            rawBytes += rawLength;
+            compressedBytes += length;
+        }
+        return new CompressedTile(bmp.getWidth(), bmp.getHeight(), bmp.getConfig(), rawLength, data);
+    }
+
+    /**
+     * Takes tile out of the cache and decompresses it into a bitmap from {@code tileCache}.
+     */
+    public Bitmap get(TileKey key, TileCache tileCache) {
+        CompressedTile tile = tiles.remove(key);
+        if(tile == null) {
+            recordMiss();
+            return null;
+        }
+        Bitmap bmp = tileCache.obtainBitmap(tile.width, tile.height, tile.config);
+        if(bmp == null) {
+            // out of memory, keep the tile for a later attempt
+            tiles.put(key, tile);
+            recordMiss();
+            return null;
+        }
+        if(bmp.getRowBytes() * bmp.getHeight() != tile.rawLength) {
+            tileCache.release(bmp);
+            recordMiss();
+            return null;
+        }
+        decompress(tile, bmp);
+        return bmp;
+    }
+
+    private void decompress(CompressedTile tile, Bitmap bmp) {
+        long start = System.nanoTime();
+        ByteBuffer decompressBuffer = decompressBuffers.get();
+        if(decompressBuffer == null || decompressBuffer.capacity() < tile.rawLength) {
+            decompressBuffer = ByteBuffer.allocate(tile.rawLength);
+            decompressBuffers.set(decompressBuffer);
+        }
+        decompressBuffer.clear();
+        Lz4Codec.decompress(tile.data, tile.data.length, decompressBuffer.array());
+        decompressBuffer.limit(tile.rawLength);
+        bmp.copyPixelsFromBuffer(decompressBuffer);
+        long elapsed = System.nanoTime() - start;
+        synchronized (this) {
+            decompressNanos += elapsed;
+            decompressedCount++;
+            hitCount++;
+        }
+    }
+
+    private synchronized void recordMiss() {
+        missCount++;
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    public synchronized long getAverageCompressNanos() {
+        return compressedCount == 0 ? 0 : compressNanos / compressedCount;
+    }
+
+    public synchronized long getAverageDecompressNanos() {
+        return decompressedCount == 0 ? 0 : decompressNanos / decompressedCount;
+    }
+
+    public synchronized float getCompressionRatio() {
+        return compressedBytes == 0 ? 0 : (float) rawBytes / compressedBytes;
+    }
+
+    public void evictAll() {
+        tiles.evictAll();
+    }
+
+    public void shutdown() {
+        compressExecutor.shutdownNow();
+        tiles.evictAll();
+    }
+
+    private static class CompressedTile {
+        final int width;
+        final int height;
+        final Bitmap.Config config;
+        final int rawLength;
+        final byte[] data;
+
+        CompressedTile(int width, int height, Bitmap.Config config, int rawLength, byte[] data) {
+            this.width = width;
+            this.height = height;
+            this.config = config;
+            this.rawLength = rawLength;
+            this.data = data;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package com.github.pdf_view.render;
+
+import android.graphics.Bitmap;
+import android.os.Process;
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Second level tile cache that keeps raw tile pixels in memory mapped files. Files are named by
+ * document fingerprint and tile key and are evicted in LRU order once the directory grows over
+ * the size limit.
+ * <p>
+ * Tiles are written on a background thread from a copy of their pixels, so render workers never
+ * wait for the disk. Only the file index is guarded by a lock, reads and writes run outside of it.
+ * <p>
+ * The directory is shared by all documents and views, so every instance working on the same
+ * directory shares one index and the size limit applies to the whole directory. Tiles are written
+ * to uniquely named temporary files that are renamed once complete, leftovers of crashed writers are
+ * deleted once they are old enough to be sure no writer owns them.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 18, 2016
+ */
+public class DiskTileCache {
+
+    private static final String TAG = DiskTileCache.class.getSimpleName();
+    private static final String TILE_EXTENSION = ".tile";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final int MAGIC = 0x50445654;
+    private static final int HEADER_SIZE = 16;
+    private static final int MAX_PENDING_WRITES = 8;
+    private static final long STALE_TEMP_AGE = TimeUnit.HOURS.toMillis(1);
+    private static final Bitmap.Config[] CONFIGS = Bitmap.Config.values();
+
+    private static final Map<String, DirectoryIndex> INDEXES = new HashMap<>();
+
+    private final File directory;
+    private final String fingerprint;
+    private final long maxSize;
+
+    private final DirectoryIndex directoryIndex;
+    private final LinkedHashMap<String, Long> index;
+    private final Set<String> pendingWrites;
+
+    private final ExecutorService writeExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+        @Override
+        public Thread newThread(final Runnable runnable) {
+            return new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, DiskTileCache.class.getSimpleName());
+        }
+    });
+
+    public DiskTileCache(File directory, String fingerprint, long maxSize) {
+        this.directory = directory;
+        this.fingerprint = fingerprint;
+        this.maxSize = maxSize;
+        directoryIndex = obtainIndex(directory);
+        index = directoryIndex.entries;
+        pendingWrites = directoryIndex.pendingWrites;
+        List<String> evicted;
+        synchronized (directoryIndex) {
+            evicted = trimToSize();
+        }
+        deleteFiles(evicted);
+    }
+
+    private static DirectoryIndex obtainIndex(File directory) {
+        synchronized (INDEXES) {
+            String path = directory.getAbsolutePath();
+            DirectoryIndex directoryIndex = INDEXES.get(path);
+            if(directoryIndex == null) {
+                directoryIndex = new DirectoryIndex();
+                readIndex(directory, directoryIndex);
+                INDEXES.put(path, directoryIndex);
+            }
+            return directoryIndex;
+        }
+    }
+
+    private static void readIndex(File directory, DirectoryIndex directoryIndex) {
+        if(!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Cannot create tile cache directory " + directory);
+            return;
+        }
+        File[] files = directory.listFiles();
+        if(files == null) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long delta = lhs.lastModified() - rhs.lastModified();
+                return delta < 0 ? -1 : (delta == 0 ? 0 : 1);
+            }
+        });
+        long staleTime = System.currentTimeMillis() - STALE_TEMP_AGE;
+        for (File file : files) {
+            String name = file.getName();
+            if(name.endsWith(TILE_EXTENSION)) {
+                directoryIndex.entries.put(name, file.length());
+                directoryIndex.size += file.length();
+            } else if(name.endsWith(TEMP_EXTENSION) && file.lastModified() < staleTime) {
+                file.delete();
+            }
+        }
+    }
+
+    public Bitmap get(TileKey key, TileCache tileCache) {
+        String name = fileName(key);
+        synchronized (directoryIndex) {
+            if(index.get(name) == null) {
+                return null;
+            }
+        }
+        File file = new File(directory, name);
+        RandomAccessFile input = null;
+        Bitmap bmp = null;
+        try {
+            input = new RandomAccessFile(file, "r");
+            FileChannel channel = input.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(buffer.getInt() != MAGIC) {
+                throw new IOException("Corrupted tile " + name);
+            }
+            int width = buffer.getInt();
+            int height = buffer.getInt();
+            int config = buffer.getInt();
+            if(config < 0 || config >= CONFIGS.length) {
+                throw new IOException("Unsupported tile config " + config);
+            }
+            bmp = tileCache.obtainBitmap(width, height, CONFIGS[config]);
+            if(bmp == null) {
+                return null;
+            }
+            if(buffer.remaining() < bmp.getRowBytes() * height) {
+                throw new IOException("Truncated tile " + name);
+            }
+            bmp.copyPixelsFromBuffer(buffer);
+            file.setLastModified(System.currentTimeMillis());
+            return bmp;
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read tile " + name, e);
+            if(bmp != null) {
+                tileCache.release(bmp);
+            }
+            remove(name);
+            return null;
+        } finally {
+            close(input);
+        }
+    }
+
+    /**
+     * Copies pixels of the tile and writes them in background. The tile is skipped if it is already
+     * stored or too many writes are pending.
+     */
+    public void put(TileKey key, Bitmap bmp) {
+        final String name = fileName(key);
+        synchronized (directoryIndex) {
+            if(index.get(name) != null || pendingWrites.contains(name)
+                    || pendingWrites.size() >= MAX_PENDING_WRITES) {
+                return;
+            }
+            pendingWrites.add(name);
+        }
+        final ByteBuffer pixels;
+        try {
+            pixels = ByteBuffer.allocate(HEADER_SIZE + bmp.getRowBytes() * bmp.getHeight());
+        } catch (OutOfMemoryError e) {
+            synchronized (directoryIndex) {
+                pendingWrites.remove(name);
+            }
+            return;
+        }
+        pixels.putInt(MAGIC);
+        pixels.putInt(bmp.getWidth());
+        pixels.putInt(bmp.getHeight());
+        pixels.putInt(bmp.getConfig().ordinal());
+        bmp.copyPixelsToBuffer(pixels);
+        pixels.flip();
+        writeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(name, pixels);
+            }
+        });
+    }
+
+    private void write(String name, ByteBuffer pixels) {
+        long size = pixels.remaining();
+        File temp = null;
+        RandomAccessFile output = null;
+        boolean written = false;
+        try {
+            temp = File.createTempFile(name, TEMP_EXTENSION, directory);
+            output = new RandomAccessFile(temp, "rw");
+            FileChannel channel = output.getChannel();
+            while (pixels.hasRemaining()) {
+                channel.write(pixels);
+            }
+            written = true;
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write tile " + name, e);
+        } finally {
+            close(output);
+        }
+        if(!written || !temp.renameTo(new File(directory, name))) {
+            if(temp != null) {
+                temp.delete();
+            }
+            synchronized (directoryIndex) {
+                pendingWrites.remove(name);
+            }
+            return;
+        }
+        List<String> evicted;
+        synchronized (directoryIndex) {
+            pendingWrites.remove(name);
+            Long replaced = index.put(name, size);
+            directoryIndex.size += size - (replaced != null ? replaced : 0);
+            evicted = trimToSize();
+        }
+        deleteFiles(evicted);
+    }
+
+    /**
+     * Drops least recently used entries of the whole directory from the index, returns names of their
+     * files. Called with the index locked.
+     */
+    private List<String> trimToSize() {
+        List<String> evicted = null;
+        Iterator<Map.Entry<String, Long>> iterator = index.entrySet().iterator();
+        while (directoryIndex.size > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> toEvict = iterator.next();
+            iterator.remove();
+            directoryIndex.size -= toEvict.getValue();
+            if(evicted == null) {
+                evicted = new ArrayList<>();
+            }
+            evicted.add(toEvict.getKey());
+        }
+        return evicted;
+    }
+
+    private void deleteFiles(List<String> names) {
+        if(names == null) {
+            return;
+        }
+        for (String name : names) {
+            new File(directory, name).delete();
+        }
+    }
+
+    private void remove(String name) {
+        synchronized (directoryIndex) {
+            Long size = index.remove(name);
+            if(size != null) {
+                directoryIndex.size -= size;
+            }
+        }
+        new File(directory, name).delete();
+    }
+
+    /**
+     * Stops the writer once already queued tiles are written.
+     */
+    public void shutdown() {
+        writeExecutor.shutdown();
+    }
+
+    private String fileName(TileKey key) {
+        return fingerprint + "_" + key.getName() + TILE_EXTENSION;
+    }
+
+    private static void close(RandomAccessFile file) {
+        if(file == null) {
+            return;
+        }
+        try {
+            file.close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Index of tile files in one directory shared by all caches using it, guarded by its own monitor.
+     */
+    private static class DirectoryIndex {
+        final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(0, 0.75f, true);
+        final Set<String> pendingWrites = new HashSet<>();
+        long size;
+    }
+}
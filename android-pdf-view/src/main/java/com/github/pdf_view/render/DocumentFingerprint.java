@@ -0,0 +1,76 @@
+package com.github.pdf_view.render;
+
+import android.os.ParcelFileDescriptor;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Content fingerprint of a document: MD5 over the whole file. Reading every block costs a pass over
+ * the file on the loading thread, but an edit anywhere in it, even one that keeps the length, gives
+ * a new fingerprint, so stale tiles and page sizes are never served for a changed document.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 18, 2016
+ */
+public class DocumentFingerprint {
+
+    private static final int BLOCK_SIZE = 64 * 1024;
+
+    private DocumentFingerprint() {
+    }
+
+    /**
+     * Hashes the whole file, must not be called on the main thread.
+     */
+    public static String compute(ParcelFileDescriptor fileDescriptor) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IOException(e.getMessage());
+        }
+        FileChannel channel = new FileInputStream(fileDescriptor.getFileDescriptor()).getChannel();
+        long length = channel.size();
+        ByteBuffer buffer = ByteBuffer.allocate(BLOCK_SIZE);
+        buffer.putLong(length);
+        buffer.flip();
+        digest.update(buffer);
+        for (long position = 0; position < length; position += BLOCK_SIZE) {
+            if(update(digest, channel, buffer, position) < BLOCK_SIZE) {
+                break;
+            }
+        }
+        return toHex(digest.digest());
+    }
+
+    /**
+     * Feeds the block at {@code position} to the digest, returns number of bytes read.
+     */
+    private static int update(MessageDigest digest, FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        buffer.clear();
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if(read <= 0) {
+                break;
+            }
+        }
+        buffer.flip();
+        int read = buffer.remaining();
+        digest.update(buffer);
+        return read;
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder builder = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            builder.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,47 @@
+package com.github.pdf_view.render;
+
+/**
+ * Layout and reading position of a document remembered between openings, see
+ * {@link DocumentMetadataStore}. Scroll offsets are in original page units relative to the top left
+ * corner of the first visible page.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+public class DocumentMetadata {
+
+    private final PageSizeTable pageSizes;
+    private final float scale;
+    private final int page;
+    private final int originalScrollX;
+    private final int originalScrollY;
+
+    public DocumentMetadata(PageSizeTable pageSizes, float scale, int page, int originalScrollX,
+                            int originalScrollY) {
+        this.pageSizes = pageSizes;
+        this.scale = scale;
+        this.page = page;
+        this.originalScrollX = originalScrollX;
+        this.originalScrollY = originalScrollY;
+    }
+
+    public PageSizeTable getPageSizes() {
+        return pageSizes;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public int getPage() {
+        return page;
+    }
+
+    public int getOriginalScrollX() {
+        return originalScrollX;
+    }
+
+    public int getOriginalScrollY() {
+        return originalScrollY;
+    }
+}
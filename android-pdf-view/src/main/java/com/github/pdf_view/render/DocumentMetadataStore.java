@@ -0,0 +1,124 @@
+package com.github.pdf_view.render;
+
+import android.util.Log;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+/**
+ * Keeps {@link DocumentMetadata} in small binary files named by document fingerprint, so a reopened
+ * document gets its exact layout before pdfium has opened a single page. Only the most recently
+ * written documents are kept.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+public class DocumentMetadataStore {
+
+    private static final String TAG = DocumentMetadataStore.class.getSimpleName();
+    private static final String METADATA_EXTENSION = ".meta";
+    private static final String TEMP_EXTENSION = ".tmp";
+    private static final int MAGIC = 0x5044564D;
+    private static final int FORMAT_VERSION = 1;
+    private static final int MAX_DOCUMENTS = 64;
+
+    private final File directory;
+
+    public DocumentMetadataStore(File directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * Returns stored metadata of the document, {@code null} if there is none or it does not match
+     * the page count.
+     */
+    public synchronized DocumentMetadata read(String fingerprint, int pageCount) {
+        File file = new File(directory, fingerprint + METADATA_EXTENSION);
+        DataInputStream in = null;
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            if(in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Unsupported metadata format");
+            }
+            PageSizeTable pageSizes = PageSizeTable.read(in, pageCount);
+            return new DocumentMetadata(pageSizes, in.readFloat(), in.readInt(), in.readInt(), in.readInt());
+        } catch (FileNotFoundException e) {
+            return null;
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot read metadata " + file, e);
+            file.delete();
+            return null;
+        } finally {
+            close(in);
+        }
+    }
+
+    public synchronized void write(String fingerprint, DocumentMetadata metadata) {
+        if(!directory.exists() && !directory.mkdirs()) {
+            Log.w(TAG, "Cannot create metadata directory " + directory);
+            return;
+        }
+        File file = new File(directory, fingerprint + METADATA_EXTENSION);
+        File temp = new File(directory, fingerprint + TEMP_EXTENSION);
+        DataOutputStream out = null;
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            metadata.getPageSizes().write(out);
+            out.writeFloat(metadata.getScale());
+            out.writeInt(metadata.getPage());
+            out.writeInt(metadata.getOriginalScrollX());
+            out.writeInt(metadata.getOriginalScrollY());
+            out.flush();
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot write metadata " + file, e);
+            close(out);
+            temp.delete();
+            return;
+        }
+        close(out);
+        if(!temp.renameTo(file)) {
+            temp.delete();
+            return;
+        }
+        trimToSize();
+    }
+
+    private void trimToSize() {
+        File[] files = directory.listFiles();
+        if(files == null || files.length <= MAX_DOCUMENTS) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File lhs, File rhs) {
+                long delta = rhs.lastModified() - lhs.lastModified();
+                return delta < 0 ? -1 : (delta == 0 ? 0 : 1);
+            }
+        });
+        for (int i = MAX_DOCUMENTS; i < files.length; i++) {
+            files[i].delete();
+        }
+    }
+
+    private static void close(Closeable closeable) {
+        if(closeable == null) {
+            return;
+        }
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.github.pdf_view.render;
+
+import android.annotation.TargetApi;
+import android.graphics.Rect;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
+
+/**
+ * Coalesces invalidation requests into at most one per frame. Starting from Jelly Bean the
+ * invalidation is dispatched on the next vsync with {@link Choreographer}, on older platforms on the
+ * next main looper iteration. Dirty rects requested within a frame are merged into their union,
+ * a request without a rect invalidates everything. Must be used from the main thread.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+public class FrameInvalidator {
+
+    private final Target target;
+    private final Runnable dispatchTask = new Runnable() {
+        @Override
+        public void run() {
+            dispatch();
+        }
+    };
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private Object frameCallback;
+
+    private boolean scheduled;
+    private int pendingRequests;
+    private final Rect dirty = new Rect();
+    private boolean dirtyAll;
+
+    private int frameCount;
+    private long absorbedRequests;
+    private int lastFrameRequests;
+    private int maxFrameRequests;
+
+    public FrameInvalidator(Target target) {
+        this.target = target;
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            frameCallback = createFrameCallback();
+        }
+    }
+
+    public void invalidate() {
+        dirtyAll = true;
+        schedule();
+    }
+
+    public void invalidate(Rect rect) {
+        dirty.union(rect);
+        schedule();
+    }
+
+    private void schedule() {
+        pendingRequests++;
+        if(scheduled) {
+            return;
+        }
+        scheduled = true;
+        if(frameCallback != null) {
+            postFrameCallback(frameCallback);
+        } else {
+            handler.post(dispatchTask);
+        }
+    }
+
+    public void cancel() {
+        if(!scheduled) {
+            return;
+        }
+        scheduled = false;
+        pendingRequests = 0;
+        dirtyAll = false;
+        dirty.setEmpty();
+        if(frameCallback != null) {
+            removeFrameCallback(frameCallback);
+        } else {
+            handler.removeCallbacks(dispatchTask);
+        }
+    }
+
+    private void dispatch() {
+        scheduled = false;
+        frameCount++;
+        absorbedRequests += pendingRequests;
+        lastFrameRequests = pendingRequests;
+        maxFrameRequests = Math.max(maxFrameRequests, pendingRequests);
+        pendingRequests = 0;
+        target.onInvalidate(dirtyAll ? null : dirty);
+        dirtyAll = false;
+        dirty.setEmpty();
+    }
+
+    /**
+     * Number of frames invalidated so far.
+     */
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    /**
+     * Number of invalidation requests absorbed by the last invalidated frame.
+     */
+    public int getLastFrameRequests() {
+        return lastFrameRequests;
+    }
+
+    public int getMaxFrameRequests() {
+        return maxFrameRequests;
+    }
+
+    public float getAverageFrameRequests() {
+        return frameCount == 0 ? 0 : (float) absorbedRequests / frameCount;
+    }
+
+    public interface Target {
+        /**
+         * @param dirty union of rects invalidated within the frame, {@code null} to redraw everything
+         */
+        void onInvalidate(Rect dirty);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private Object createFrameCallback() {
+        return new Choreographer.FrameCallback() {
+            @Override
+            public void doFrame(long frameTimeNanos) {
+                dispatch();
+            }
+        };
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static void postFrameCallback(Object callback) {
+        Choreographer.getInstance().postFrameCallback((Choreographer.FrameCallback) callback);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static void removeFrameCallback(Object callback) {
+        Choreographer.getInstance().removeFrameCallback((Choreographer.FrameCallback) callback);
+    }
+}
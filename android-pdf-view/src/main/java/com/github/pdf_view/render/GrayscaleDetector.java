@@ -0,0 +1,106 @@
+package com.github.pdf_view.render;
+
+import android.graphics.Bitmap;
+import android.graphics.Color;
+import android.util.SparseIntArray;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Detects pages without colour content from their thumbnails and converts content tiles of such
+ * pages to {@link Bitmap.Config#ALPHA_8} ink coverage masks. Detection runs once per page index.
+ * Pixel work uses buffers of the calling thread, only the page mode table is locked.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 19, 2016
+ */
+public class GrayscaleDetector {
+
+    private static final int GRAYSCALE = 1;
+    private static final int COLOR = 2;
+
+    private static final int COLOR_TOLERANCE = 8;
+
+    private final SparseIntArray pageModes = new SparseIntArray();
+
+    private final ThreadLocal<int[]> rows = new ThreadLocal<>();
+    private final ThreadLocal<ByteBuffer> alphaBuffers = new ThreadLocal<>();
+
+    public void detect(int pageIndex, Bitmap thumbnail) {
+        if(thumbnail == null) {
+            return;
+        }
+        synchronized (this) {
+            if(pageModes.get(pageIndex) != 0) {
+                return;
+            }
+        }
+        int mode = isGrayscale(thumbnail) ? GRAYSCALE : COLOR;
+        synchronized (this) {
+            pageModes.put(pageIndex, mode);
+        }
+    }
+
+    public synchronized boolean isGrayscale(int pageIndex) {
+        return pageModes.get(pageIndex) == GRAYSCALE;
+    }
+
+    private boolean isGrayscale(Bitmap bmp) {
+        int width = bmp.getWidth();
+        int height = bmp.getHeight();
+        int[] row = rowBuffer(width);
+        for (int y = 0; y < height; y++) {
+            bmp.getPixels(row, 0, width, 0, y, width, 1);
+            for (int x = 0; x < width; x++) {
+                int pixel = row[x];
+                int red = Color.red(pixel);
+                int green = Color.green(pixel);
+                int blue = Color.blue(pixel);
+                if(Math.abs(red - green) > COLOR_TOLERANCE
+                        || Math.abs(green - blue) > COLOR_TOLERANCE
+                        || Math.abs(red - blue) > COLOR_TOLERANCE) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes ink coverage ({@code 255 - luminance}) of {@code source} into ALPHA_8 {@code target}
+     * of the same size. Drawn with a black paint over white it reproduces the grayscale source.
+     */
+    public void convertToAlpha(Bitmap source, Bitmap target) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        int rowBytes = target.getRowBytes();
+        int[] row = rowBuffer(width);
+        ByteBuffer alphaBuffer = alphaBuffers.get();
+        if(alphaBuffer == null || alphaBuffer.capacity() < rowBytes * height) {
+            alphaBuffer = ByteBuffer.allocate(rowBytes * height);
+            alphaBuffers.set(alphaBuffer);
+        }
+        alphaBuffer.clear();
+        byte[] alpha = alphaBuffer.array();
+        for (int y = 0; y < height; y++) {
+            source.getPixels(row, 0, width, 0, y, width, 1);
+            int offset = y * rowBytes;
+            for (int x = 0; x < width; x++) {
+                int pixel = row[x];
+                int luminance = (Color.red(pixel) * 77 + Color.green(pixel) * 150 + Color.blue(pixel) * 29) >> 8;
+                alpha[offset + x] = (byte) (255 - luminance);
+            }
+        }
+        alphaBuffer.limit(rowBytes * height);
+        target.copyPixelsFromBuffer(alphaBuffer);
+    }
+
+    private int[] rowBuffer(int width) {
+        int[] row = rows.get();
+        if(row == null || row.length < width) {
+            row = new int[width];
+            rows.set(row);
+        }
+        return row;
+    }
+}
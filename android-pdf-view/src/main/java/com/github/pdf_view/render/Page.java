@@ -7,6 +7,9 @@ import android.graphics.Point;
 import android.graphics.Rect;
 import android.util.Log;
 
+import com.github.pdf_view.utils.LongHashMap;
+import com.github.pdf_view.utils.RenderTrace;
+
 import java.util.ArrayList;
 import java.util.List;
 
@@ -17,20 +20,31 @@ import java.util.List;
 public class Page {
 
     private static final String TAG = Page.class.getName();
+    private static final Paint STUB_PAINT = new Paint();
+
+    static {
+        STUB_PAINT.setColor(Color.WHITE);
+    }
+
     private PageSizeResolver resolver;
     private RenderInfo renderInfo;
     private PagePart thumbnail;
+    private PagePart preview;
+    private final Rect visibleArea = new Rect();
     private float lastUpdatedScale;
-    private Page nextPage;
+    private final PageLayout layout;
     private int index;
     List<PagePart> parts = new ArrayList<>();
+    private final LongHashMap<PagePart> partIndex = new LongHashMap<>();
     private boolean isDefault = true;
-    private int topPosition;
+    private long originalTop;
+    private int originalTopVersion = -1;
 
-    public Page (int pageIndex, RenderInfo renderInfo) {
+    public Page (int pageIndex, RenderInfo renderInfo, PageLayout layout) {
         this.index = pageIndex;
         resolver = new StubPageSizeResolver();
         this.renderInfo = renderInfo;
+        this.layout = layout;
     }
 
 
@@ -47,11 +61,12 @@ public class Page {
     }
 
     public int getTop() {
-        return (int) ((topPosition * renderInfo.getNormalizeScale() + renderInfo.getPageSpacing() * index) * renderInfo.getScale());
-    }
-
-    private int getPageOriginalBottom() {
-        return topPosition + resolver.getOriginalHeight(renderInfo);
+        int version = layout.getVersion();
+        if(version != originalTopVersion) {
+            originalTop = layout.getOriginalTop(index);
+            originalTopVersion = version;
+        }
+        return layout.toTop(originalTop, index);
     }
 
     public float getScale() {
@@ -86,19 +101,23 @@ public class Page {
         int visiblePageLeft = Math.max(scrollX - getPageOffsetLeft(), 0);
         int visiblePageRight = Math.min(renderWidth + visiblePageLeft, getWidth());
         int visiblePageBottom = visiblePageTop + Math.min(renderHeight - Math.max(0, getTop() - scrollY), getHeight() - visiblePageTop);
+        visibleArea.set(visiblePageLeft, visiblePageTop, visiblePageRight, visiblePageBottom);
         removeUnusedParts(visiblePageLeft, visiblePageTop, visiblePageRight, visiblePageBottom);
         int left = (visiblePageLeft / partWidth) * partWidth;
         int top = (visiblePageTop / partHeight) * partHeight;
         while (top < visiblePageBottom) {
             int tempLeft = left;
             while (tempLeft < visiblePageRight) {
-                Rect partBounds = new Rect(tempLeft, top,
-                        Math.min(getWidth(), tempLeft + partWidth),
-                        Math.min(top + partHeight, getHeight()));
-                PagePart pagePart = new PagePart(partBounds, index, getWidth(),
-                        getHeight(), scale);
-                if (!parts.contains(pagePart)) {
+                long key = PagePart.packKey(index, scale, tempLeft / partWidth, top / partHeight);
+                PagePart existing = partIndex.get(key);
+                if (existing == null || existing.getBounds().left != tempLeft || existing.getBounds().top != top) {
+                    Rect partBounds = new Rect(tempLeft, top,
+                            Math.min(getWidth(), tempLeft + partWidth),
+                            Math.min(top + partHeight, getHeight()));
+                    PagePart pagePart = new PagePart(partBounds, index, getWidth(),
+                            getHeight(), scale, tempLeft / partWidth, top / partHeight);
                     parts.add(pagePart);
+                    partIndex.put(key, pagePart);
                 }
                 tempLeft += partWidth;
             }
@@ -106,6 +125,14 @@ public class Page {
         }
     }
 
+    /**
+     * Replaces part at {@code position} with an equal part, keeping the lookup index in sync.
+     */
+    void setPart(int position, PagePart part) {
+        parts.set(position, part);
+        partIndex.put(part.getPackedKey(), part);
+    }
+
     private boolean isOverlaps(Rect rect1, Rect rect2) {
         boolean result = rect1.left < rect2.left + rect2.width()
                 && rect1.left + rect1.width() > rect2.left
@@ -119,6 +146,7 @@ public class Page {
         float scale = renderInfo.getScale();
         if (lastUpdatedScale != scale) {
             parts.clear();
+            partIndex.clear();
             lastUpdatedScale = scale;
             return;
         }
@@ -126,6 +154,8 @@ public class Page {
         for (PagePart pPart : parts) {
             if (isOverlaps(pPart.getScaledBounds(scale), visibleBounds)) {
                 actualLeft.add(pPart);
+            } else {
+                partIndex.remove(pPart.getPackedKey());
             }
         }
         parts = actualLeft;
@@ -141,26 +171,51 @@ public class Page {
         return thumbnail;
     }
 
+    /**
+     * Returns a single part covering the visible area of the page at {@code ratio} of the current
+     * scale, rendered before full resolution parts. The preview is kept until the scale changes.
+     */
+    public PagePart preparePreview(float ratio) {
+        float previewScale = renderInfo.getScale() * ratio;
+        if(preview != null && preview.getScale() == previewScale) {
+            return preview;
+        }
+        preview = new PagePart(new Rect((int) (visibleArea.left * ratio), (int) (visibleArea.top * ratio),
+                (int) Math.ceil(visibleArea.right * ratio), (int) Math.ceil(visibleArea.bottom * ratio)),
+                index, (int) (getWidth() * ratio), (int) (getHeight() * ratio), previewScale);
+        preview.setPersistent(false);
+        return preview;
+    }
+
+    public PagePart getPreview() {
+        return preview;
+    }
+
+    public void clearPreview() {
+        preview = null;
+    }
+
     public void preparePage() {
         if(!isDefault) {
             return;
         }
-        Log.i(TAG, "Page " + index + " is ready");
-        Point pageSize = renderInfo.getPageSize(index);
-        int oldBottom = getPageOriginalBottom();
-        resolver = new RealPageSizeResolver(pageSize.x, pageSize.y);
-        isDefault = false;
-        if(nextPage != null) {
-            offsetBy(getPageOriginalBottom() - oldBottom);
-        }
-        Log.wtf("Okaminskyi", "Page is prepared " + index);
+        preparePage(renderInfo.getPageSize(index));
     }
 
-    private void offsetBy(int dy) {
-        Page next = nextPage;
-        while (next != null) {
-            next.topPosition += dy;
-            next = next.nextPage;
+    /**
+     * Applies already resolved original size of the page.
+     */
+    public void preparePage(Point pageSize) {
+        if(!isDefault) {
+            return;
+        }
+        RenderTrace.begin(RenderTrace.LAYOUT);
+        resolver = new RealPageSizeResolver(pageSize.x, pageSize.y);
+        isDefault = false;
+        layout.setOriginalHeight(index, resolver.getOriginalHeight(renderInfo));
+        RenderTrace.end();
+        if(RenderTrace.VERBOSE) {
+            Log.v(TAG, "Page " + index + " is ready");
         }
     }
 
@@ -179,17 +234,35 @@ public class Page {
         return resolver.getOptimalPageScale(renderInfo);
     }
 
-    public void setNextPage(Page nextPage) {
-        this.nextPage = nextPage;
+    /**
+     * Draws thumbnail, preview and parts of the page. Page geometry is computed once for all of them
+     * and nothing is allocated, this runs for every visible page on every frame.
+     */
+    public void draw(Canvas canvas) {
+        float scale = getScale();
+        int left = getRenderLeft();
+        int top = getRenderTop();
+        drawThumbnail(canvas, scale, left, top);
+        if(preview != null) {
+            preview.drawPart(canvas, scale, left, top);
+        }
+        for (int i = 0; i < parts.size(); i++) {
+            parts.get(i).drawPart(canvas, scale, left, top);
+        }
     }
 
     public void drawThumbnail(Canvas canvas) {
+        drawThumbnail(canvas, getScale(), getRenderLeft(), getRenderTop());
+    }
+
+    /**
+     * Draws thumbnail with page geometry already computed for the frame.
+     */
+    public void drawThumbnail(Canvas canvas, float scale, int renderLeft, int renderTop) {
         if(thumbnail != null) {
-            thumbnail.drawPart(canvas, getScale(), getRenderLeft(), getRenderTop(), true);
+            thumbnail.drawPart(canvas, scale, renderLeft, renderTop, true);
         } else {
-            Paint paint = new Paint();
-            paint.setColor(Color.WHITE);
-            canvas.drawRect(getRenderLeft(), getRenderTop(), getRenderLeft() + getWidth(), getBottom(), paint);
+            canvas.drawRect(renderLeft, renderTop, renderLeft + getWidth(), renderTop + getHeight(), STUB_PAINT);
         }
     }
 
@@ -200,9 +273,5 @@ public class Page {
     public int getIndex() {
         return index;
     }
-
-    public void setPreviousPage(Page page) {
-        topPosition = page.getPageOriginalBottom();
-    }
 }
 
@@ -0,0 +1,96 @@
+package com.github.pdf_view.render;
+
+/**
+ * Vertical layout of the document. Original page heights are kept in a Fenwick tree, so the top of
+ * a page, an update of a page height and the page at an offset are all O(log n). Every height change
+ * bumps {@link #getVersion()}, letting pages cache their tops.
+ * <p>
+ * Page top at the current scale is {@code (originalTop * normalizeScale + pageSpacing * index) * scale}.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+public class PageLayout {
+
+    private final RenderInfo renderInfo;
+    private final int[] heights;
+    private final long[] tree;
+    private final int highestStep;
+    private volatile int version;
+
+    public PageLayout(RenderInfo renderInfo, int pageCount, int defaultHeight) {
+        this.renderInfo = renderInfo;
+        heights = new int[pageCount];
+        tree = new long[pageCount + 1];
+        for (int i = 1; i <= pageCount; i++) {
+            heights[i - 1] = defaultHeight;
+            tree[i] += defaultHeight;
+            int parent = i + (i & -i);
+            if(parent <= pageCount) {
+                tree[parent] += tree[i];
+            }
+        }
+        highestStep = pageCount == 0 ? 0 : Integer.highestOneBit(pageCount);
+    }
+
+    public int getPageCount() {
+        return heights.length;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public synchronized int getOriginalHeight(int index) {
+        return heights[index];
+    }
+
+    public synchronized void setOriginalHeight(int index, int height) {
+        long delta = height - heights[index];
+        if(delta == 0) {
+            return;
+        }
+        heights[index] = height;
+        for (int i = index + 1; i < tree.length; i += i & -i) {
+            tree[i] += delta;
+        }
+        version++;
+    }
+
+    /**
+     * Sum of original heights of all pages before the page.
+     */
+    public synchronized long getOriginalTop(int index) {
+        long sum = 0;
+        for (int i = index; i > 0; i -= i & -i) {
+            sum += tree[i];
+        }
+        return sum;
+    }
+
+    /**
+     * Converts original top of the page to its top at the current scale.
+     */
+    public int toTop(long originalTop, int index) {
+        return (int) ((originalTop * renderInfo.getNormalizeScale() + renderInfo.getPageSpacing() * index)
+                * renderInfo.getScale());
+    }
+
+    /**
+     * Returns index of the last page whose top at the current scale is not below {@code offset}, 0 if
+     * the offset is above the first page.
+     */
+    public synchronized int getPageAt(int offset) {
+        int lastIndex = heights.length - 1;
+        int position = 0;
+        long sum = 0;
+        for (int step = highestStep; step > 0; step >>= 1) {
+            int next = position + step;
+            if(next <= lastIndex && toTop(sum + tree[next], next) <= offset) {
+                position = next;
+                sum += tree[next];
+            }
+        }
+        return position;
+    }
+}
@@ -4,7 +4,6 @@ import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Color;
 import android.graphics.Paint;
-import android.graphics.Point;
 import android.graphics.Rect;
 import android.util.Log;
 
@@ -17,21 +16,67 @@ import com.shockwave.pdfium.PdfiumCore;
  */
 public class PagePart {
 
+    private static final int MAX_SAMPLE_SIZE = 8;
+
+    private static final Paint BACKGROUND_PAINT = new Paint();
+    private static final Paint INK_PAINT = new Paint(Paint.FILTER_BITMAP_FLAG);
+    private static final Paint FILL_PAINT = new Paint();
+    // drawing happens on the main thread only
+    private static final Rect DRAW_RECT = new Rect();
+
+    static {
+        BACKGROUND_PAINT.setColor(Color.WHITE);
+        INK_PAINT.setColor(Color.BLACK);
+    }
+
     private final int pageWidth;
     private final int pageHeight;
 
+    private static final int PAGE_BITS = 24;
+    private static final int LEVEL_BITS = 16;
+    private static final int COLUMN_BITS = 12;
+    private static final int ROW_BITS = 12;
+
+    private final long key;
     private Rect bounds;
     private float scale;
     private Bitmap renderedPagePart;
+    private boolean degraded;
+    private boolean persistent = true;
+    private boolean uniform;
+    private int uniformColor;
     int index;
 
 
     public PagePart (Rect bounds, int index, int pageWidth, int pageHeight, float currentScale) {
+        this(bounds, index, pageWidth, pageHeight, currentScale, 0, 0);
+    }
+
+    public PagePart (Rect bounds, int index, int pageWidth, int pageHeight, float currentScale,
+                     int column, int row) {
         this.index = index;
         this.bounds = bounds;
         this.pageWidth = pageWidth;
         this.pageHeight = pageHeight;
         this.scale = currentScale;
+        this.key = packKey(index, currentScale, column, row);
+    }
+
+    /**
+     * Packs tile position into a primitive key: page in 24 bits, scale level ({@code scale * 256})
+     * in 16 bits, column and row in 12 bits each. Tiles of scales within 1/256 of each other share a
+     * key, so lookups by key must still confirm the match with {@link #equals(Object)}.
+     */
+    public static long packKey(int index, float scale, int column, int row) {
+        long level = Math.round(scale * 256) & ((1 << LEVEL_BITS) - 1);
+        return ((long) (index & ((1 << PAGE_BITS) - 1)) << (LEVEL_BITS + COLUMN_BITS + ROW_BITS))
+                | (level << (COLUMN_BITS + ROW_BITS))
+                | ((long) (column & ((1 << COLUMN_BITS) - 1)) << ROW_BITS)
+                | (row & ((1 << ROW_BITS) - 1));
+    }
+
+    public long getPackedKey() {
+        return key;
     }
 
     public void drawPart(Canvas canvas, float scale, int pageOffsetLeft, int pageOffsetTop) {
@@ -39,46 +84,132 @@ public class PagePart {
     }
 
     public void drawPart(Canvas canvas, float scale, int pageOffsetLeft, int pageOffsetTop, boolean fillColor) {
-        Rect targetRect = getScaledBounds(scale);
+        Rect targetRect = getScaledBounds(scale, DRAW_RECT);
         targetRect.offset(pageOffsetLeft, pageOffsetTop);
-        if(renderedPagePart != null) {
+        if(renderedPagePart != null && renderedPagePart.getConfig() == Bitmap.Config.ALPHA_8) {
+            canvas.drawRect(targetRect, BACKGROUND_PAINT);
+            canvas.drawBitmap(renderedPagePart, null, targetRect, INK_PAINT);
+        } else if(renderedPagePart != null) {
             canvas.drawBitmap(renderedPagePart, null, targetRect, null);
+        } else if(uniform) {
+            FILL_PAINT.setColor(uniformColor);
+            canvas.drawRect(targetRect, FILL_PAINT);
         } else if(fillColor) {
-            Paint paint = new Paint();
-            paint.setColor(Color.WHITE);
-            canvas.drawRect(targetRect, paint);
+            canvas.drawRect(targetRect, BACKGROUND_PAINT);
         }
     }
 
-    public void renderPart(PdfDocument pdfDocument, PdfiumCore core, BitmapCache bitmapCache) {
-        Bitmap bmp = bitmapCache.peek(new Point(bounds.width(), bounds.height()));
+    public void renderPart(PdfDocument pdfDocument, PdfiumCore core, TileCache tileCache, Bitmap.Config config,
+                           GrayscaleDetector grayscaleDetector, UniformTileDetector uniformTileDetector,
+                           RenderStats stats) {
+        TileKey key = getKey();
+        Bitmap bmp = tileCache.get(key);
+        if(bmp != null) {
+            renderedPagePart = bmp;
+            return;
+        }
+        Integer cachedColor = tileCache.getUniformColor(key);
+        if(cachedColor != null) {
+            setUniformColor(cachedColor);
+            return;
+        }
+        int sampleSize = 1;
+        bmp = tileCache.obtainBitmap(bounds.width(), bounds.height(), config);
+        while (bmp == null && sampleSize < MAX_SAMPLE_SIZE) {
+            sampleSize *= 2;
+            bmp = tileCache.obtainBitmap(Math.max(bounds.width() / sampleSize, 1),
+                    Math.max(bounds.height() / sampleSize, 1), config);
+        }
         if(bmp == null) {
-            bmp = Bitmap.createBitmap(bounds.width(), bounds.height(), Bitmap.Config.ARGB_8888);
+            return;
+        }
+        long cpuTime = RenderStats.threadCpuTime();
+        core.renderPageBitmap(pdfDocument, bmp, index, -bounds.left / sampleSize, -bounds.top / sampleSize,
+                pageWidth / sampleSize, pageHeight / sampleSize);
+        stats.recordPdfiumTime(cpuTime);
+        degraded = sampleSize != 1;
+        if(uniformTileDetector != null && uniformTileDetector.isUniform(bmp)) {
+            setUniformColor(bmp.getPixel(0, 0));
+            tileCache.release(bmp);
+            return;
+        }
+        if(grayscaleDetector != null && grayscaleDetector.isGrayscale(index)) {
+            bmp = toAlpha(bmp, tileCache, grayscaleDetector);
+        }
+        if(!degraded && persistent) {
+            tileCache.persist(key, bmp);
         }
-        core.renderPageBitmap(pdfDocument, bmp, index, -bounds.left, -bounds.top, pageWidth, pageHeight);
         renderedPagePart = bmp;
     }
 
-    public void recycle(BitmapCache bitmapCache) {
+    private static Bitmap toAlpha(Bitmap bmp, TileCache tileCache, GrayscaleDetector grayscaleDetector) {
+        Bitmap alpha = tileCache.obtainBitmap(bmp.getWidth(), bmp.getHeight(), Bitmap.Config.ALPHA_8);
+        if(alpha == null) {
+            return bmp;
+        }
+        grayscaleDetector.convertToAlpha(bmp, alpha);
+        tileCache.release(bmp);
+        return alpha;
+    }
+
+    private void setUniformColor(int color) {
+        uniformColor = color;
+        uniform = true;
+    }
+
+    public void recycle(TileCache tileCache) {
+        if(uniform) {
+            uniform = false;
+            tileCache.putUniformColor(getKey(), uniformColor);
+            return;
+        }
         Bitmap bmp = renderedPagePart;
         renderedPagePart = null;
-        if(bmp != null) {
-            bitmapCache.put(new Point(bounds.width(), bounds.height()), bmp);
+        if(bmp == null) {
+            return;
+        }
+        if(degraded) {
+            tileCache.release(bmp);
+        } else {
+            tileCache.put(getKey(), bmp);
         }
+    }
+
+    /**
+     * Returns rendered bitmap straight to the free pool without keeping its pixels.
+     */
+    public void release(TileCache tileCache) {
+        uniform = false;
+        Bitmap bmp = renderedPagePart;
         renderedPagePart = null;
+        if(bmp != null) {
+            tileCache.release(bmp);
+        }
+    }
+
+    public TileKey getKey() {
+        return new TileKey(index, pageWidth, pageHeight, scale, bounds);
     }
 
 
     public Rect getScaledBounds(float scale) {
+        return getScaledBounds(scale, new Rect());
+    }
+
+    /**
+     * Writes bounds of the part at the given scale into {@code out} and returns it.
+     */
+    public Rect getScaledBounds(float scale, Rect out) {
         double deltaScale = (double) scale / this.scale;
-        return new Rect((int) (bounds.left * deltaScale),
+        out.set((int) (bounds.left * deltaScale),
                 (int) (bounds.top * deltaScale),
                 (int) (bounds.right * deltaScale),
                 (int) (bounds.bottom * deltaScale));
+        return out;
     }
 
     public boolean isRendered() {
-        return renderedPagePart != null;
+        return renderedPagePart != null || uniform;
     }
 
     @Override
@@ -97,11 +228,25 @@ public class PagePart {
         int result = pageWidth;
         result = 31 * result + pageHeight;
         result = 31 * result + bounds.hashCode();
-        result = 31 * result + (renderedPagePart != null ? renderedPagePart.hashCode() : 0);
         result = 31 * result + index;
         return result;
     }
 
+    Bitmap getRenderedBitmap() {
+        return renderedPagePart;
+    }
+
+    /**
+     * Parts that are not persistent are never written to the disk tile cache.
+     */
+    public void setPersistent(boolean persistent) {
+        this.persistent = persistent;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
     public Rect getBounds() {
         return bounds;
     }
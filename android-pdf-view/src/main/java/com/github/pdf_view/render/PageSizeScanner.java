@@ -0,0 +1,150 @@
+package com.github.pdf_view.render;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.github.pdf_view.utils.RenderTrace;
+import com.shockwave.pdfium.PdfDocument;
+import com.shockwave.pdfium.PdfiumCore;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Fills {@link PageSizeTable} in the background, nearest pages to the start page first. Scanned
+ * pages are published to the main thread in batches, so layout is updated a few times instead of
+ * once per page. Pages already resolved by render workers are skipped.
+ * <p>
+ * Pdfium keeps every opened page in memory until its document is closed and has no way to read a
+ * page size without opening the page. The scanner therefore works on its own document handle that
+ * is reopened every {@link #PAGES_PER_HANDLE} pages, and it waits while render workers are busy,
+ * so it does not compete with them for the global pdfium lock.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+public class PageSizeScanner implements Runnable {
+
+    private static final String TAG = PageSizeScanner.class.getSimpleName();
+    private static final int BATCH_SIZE = 16;
+    private static final int PAGES_PER_HANDLE = 64;
+    private static final long BUSY_WAIT_MILLIS = 16;
+
+    private final PdfiumCore pdfium;
+    private final PageSizeTable table;
+    private final int startPage;
+    private final Listener listener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private volatile boolean cancelled;
+
+    public PageSizeScanner(PdfiumCore pdfium, PageSizeTable table, int startPage, Listener listener) {
+        this.pdfium = pdfium;
+        this.table = table;
+        this.startPage = startPage;
+        this.listener = listener;
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    @Override
+    public void run() {
+        int pageCount = table.getPageCount();
+        int[] batch = new int[BATCH_SIZE];
+        int count = 0;
+        PdfDocument document = null;
+        int openedPages = 0;
+        try {
+            for (int distance = 0; distance < pageCount; distance++) {
+                for (int side = 0; side < 2; side++) {
+                    int index = side == 0 ? startPage + distance : startPage - distance;
+                    if(index < 0 || index >= pageCount || (side == 1 && distance == 0) || table.isKnown(index)) {
+                        continue;
+                    }
+                    if(!waitForIdleRenderer()) {
+                        return;
+                    }
+                    if(document == null) {
+                        document = listener.openDocument();
+                    }
+                    scan(document, index);
+                    if(++openedPages == PAGES_PER_HANDLE) {
+                        // drops pages opened so far
+                        pdfium.closeDocument(document);
+                        document = null;
+                        openedPages = 0;
+                    }
+                    batch[count++] = index;
+                    if(count == BATCH_SIZE) {
+                        publish(batch, count);
+                        count = 0;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Cannot open document for page size scan", e);
+        } finally {
+            if(document != null) {
+                pdfium.closeDocument(document);
+            }
+        }
+        if(count > 0) {
+            publish(batch, count);
+        }
+    }
+
+    /**
+     * Sleeps while render workers are busy, returns {@code false} if the scan was cancelled meanwhile.
+     */
+    private boolean waitForIdleRenderer() {
+        while (!cancelled && listener.isRenderBusy()) {
+            try {
+                Thread.sleep(BUSY_WAIT_MILLIS);
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+        return !cancelled;
+    }
+
+    private void scan(PdfDocument document, int index) {
+        RenderTrace.begin(RenderTrace.LAYOUT);
+        try {
+            pdfium.openPage(document, index);
+            table.set(index, pdfium.getPageWidth(document, index), pdfium.getPageHeight(document, index));
+        } finally {
+            RenderTrace.end();
+        }
+    }
+
+    private void publish(int[] batch, int count) {
+        final int[] indices = Arrays.copyOf(batch, count);
+        mainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if(!cancelled) {
+                    listener.onPageSizesScanned(indices);
+                }
+            }
+        });
+    }
+
+    public interface Listener {
+        /**
+         * Called on the main thread with indices of pages whose sizes were added to the table.
+         */
+        void onPageSizesScanned(int[] indices);
+
+        /**
+         * Opens a separate handle of the document for the scanner, called on the scan thread.
+         */
+        PdfDocument openDocument() throws IOException;
+
+        /**
+         * Returns {@code true} while render workers have work, called on the scan thread.
+         */
+        boolean isRenderBusy();
+    }
+}
@@ -0,0 +1,86 @@
+package com.github.pdf_view.render;
+
+import android.graphics.Point;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Original page sizes of the document packed into primitive tables. A zero width marks a page whose
+ * size is not known yet. Filled by {@link PageSizeScanner} and by render workers, read from any thread.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+public class PageSizeTable {
+
+    private final int[] widths;
+    private final int[] heights;
+    private int knownCount;
+
+    public PageSizeTable(int pageCount) {
+        widths = new int[pageCount];
+        heights = new int[pageCount];
+    }
+
+    public int getPageCount() {
+        return widths.length;
+    }
+
+    public synchronized boolean isKnown(int index) {
+        return widths[index] != 0;
+    }
+
+    /**
+     * Copies size of the page into {@code out}, returns {@code false} if it is not known yet.
+     */
+    public synchronized boolean get(int index, Point out) {
+        if(widths[index] == 0) {
+            return false;
+        }
+        out.x = widths[index];
+        out.y = heights[index];
+        return true;
+    }
+
+    public synchronized void set(int index, int width, int height) {
+        if(widths[index] == 0) {
+            knownCount++;
+        }
+        widths[index] = Math.max(width, 1);
+        heights[index] = height;
+    }
+
+    public synchronized int getKnownCount() {
+        return knownCount;
+    }
+
+    public synchronized void write(DataOutputStream out) throws IOException {
+        out.writeInt(widths.length);
+        for (int i = 0; i < widths.length; i++) {
+            out.writeInt(widths[i]);
+            out.writeInt(heights[i]);
+        }
+    }
+
+    /**
+     * Reads table written by {@link #write(DataOutputStream)}, the document must still have
+     * {@code pageCount} pages.
+     */
+    public static PageSizeTable read(DataInputStream in, int pageCount) throws IOException {
+        int storedCount = in.readInt();
+        if(storedCount != pageCount) {
+            throw new IOException("Page count changed from " + storedCount + " to " + pageCount);
+        }
+        PageSizeTable table = new PageSizeTable(pageCount);
+        for (int i = 0; i < pageCount; i++) {
+            int width = in.readInt();
+            int height = in.readInt();
+            if(width != 0) {
+                table.set(i, width, height);
+            }
+        }
+        return table;
+    }
+}
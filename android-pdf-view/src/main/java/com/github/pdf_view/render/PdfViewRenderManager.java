@@ -1,23 +1,26 @@
 package com.github.pdf_view.render;
 
 
+import android.annotation.TargetApi;
+import android.content.ComponentCallbacks;
+import android.content.ComponentCallbacks2;
+import android.content.Context;
+import android.content.res.Configuration;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.os.AsyncTask;
-import android.support.annotation.CallSuper;
+import android.graphics.Point;
+import android.graphics.Rect;
+import android.os.Build;
 import android.util.Log;
-import android.util.Pair;
+import android.util.SparseArray;
 
+import com.github.pdf_view.PdfViewStats;
+import com.github.pdf_view.utils.LongHashMap;
+import com.github.pdf_view.utils.RenderTrace;
 import com.shockwave.pdfium.PdfDocument;
 import com.shockwave.pdfium.PdfiumCore;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.SynchronousQueue;
-import java.util.concurrent.ThreadPoolExecutor;
-import java.util.concurrent.TimeUnit;
-
-import static android.R.attr.value;
 
 /**
  * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
@@ -27,88 +30,185 @@ public class PdfViewRenderManager {
     final int maxMemory = (int) (Runtime.getRuntime().maxMemory() / 1024);
     final int cacheSize = maxMemory / 8;
 
-    private BitmapCache cache = new BitmapCache(cacheSize);
+    private BitmapCache cache = new BitmapCache(cacheSize / 2);
+
+    private TileCache tileCache = new TileCache(cacheSize / 2, cache);
+
+    private GrayscaleDetector grayscaleDetector = new GrayscaleDetector();
+
+    private UniformTileDetector uniformTileDetector = new UniformTileDetector();
 
-    private ThreadPoolExecutor thumbnailExecutor = new ThreadPoolExecutor(1, Integer.MAX_VALUE, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
-    private ThreadPoolExecutor contentExecutor = new ThreadPoolExecutor(1, Integer.MAX_VALUE, 1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+    private final RenderStats stats = new RenderStats();
+
+    private final RenderScheduler scheduler;
+
+    private final Object layoutLock = new Object();
 
     private static final String TAG = PdfViewRenderManager.class.getSimpleName();
     private final PdfiumCore pdfium;
     private final PdfDocument document;
     private final PdfViewRenderer renderer;
 
+    private static final int TIER_LANDING_THUMBNAIL = 0;
+    private static final int TIER_VISIBLE_THUMBNAIL = 1;
+    private static final int TIER_PREVIEW = 2;
+    private static final int TIER_VISIBLE_CONTENT = 3;
+    private static final int TIER_OFFSCREEN_THUMBNAIL = 4;
+
+    private static final float PREVIEW_RATIO = 0.5F;
+
+    private LongHashMap<PagePart> renderedThumbnails = new LongHashMap<>();
+    private SparseArray<ThumbnailRequest> pendingThumbnails = new SparseArray<>();
 
+    private LongHashMap<PagePart> renderedContentParts = new LongHashMap<>();
+    private LongHashMap<ContentRequest> pendingContent = new LongHashMap<>();
 
-    private List<PagePart> renderedThumbnails = new ArrayList<>();
-    private RenderThumbnailsTask renderThumbnailsTask;
+    private SparseArray<PagePart> renderedPreviews = new SparseArray<>();
+    private SparseArray<PreviewRequest> pendingPreviews = new SparseArray<>();
 
-    private List<PagePart> renderedContentParts = new ArrayList<>();
-    private RenderContentTask renderContentTask;
+    private final LongHashMap<PagePart> desiredParts = new LongHashMap<>();
+    private final SparseArray<Page> desiredPages = new SparseArray<>();
 
-    PdfViewRenderManager(PdfDocument document, PdfiumCore pdfium, PdfViewRenderer renderer) {
+    private final Context context;
+    // typed as the API 1 interface, so this class does not reference ComponentCallbacks2 on API 11-13
+    private ComponentCallbacks memoryCallbacks;
+
+    PdfViewRenderManager(Context context, PdfDocument document, PdfiumCore pdfium, PdfViewRenderer renderer,
+                         DiskTileCache diskTileCache) {
+        this.context = context.getApplicationContext();
         this.pdfium = pdfium;
         this.renderer = renderer;
         this.document = document;
+        scheduler = new RenderScheduler(renderer.getRenderThreadCount(), stats);
+        tileCache.setDiskCache(diskTileCache);
+        if(renderer.getCompressedTileCacheSize() > 0) {
+            tileCache.setCompressedCache(new CompressedTileCache(renderer.getCompressedTileCacheSize()));
+        }
+        if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
+            memoryCallbacks = new MemoryCallbacks();
+            this.context.registerComponentCallbacks(memoryCallbacks);
+        }
     }
 
 
     public void renderThumbnails(List<Page> thumbPages) {
-        boolean allRendered = true;
+        boolean allRendered = pendingThumbnails.size() == 0;
         for (Page tPage : thumbPages) {
-            if(!renderedThumbnails.contains(tPage.getThumbnail())) {
-                allRendered = false;
+            if(!allRendered) {
                 break;
             }
+            allRendered = isRegistered(renderedThumbnails, tPage.getThumbnail());
         }
         if(allRendered) {
             return;
         }
-        List<PagePart> toRenderParts = new ArrayList<>();
+        desiredParts.clear();
+        desiredPages.clear();
         for (Page page : thumbPages) {
-            toRenderParts.add(page.getThumbnail());
+            register(desiredParts, page.getThumbnail());
+            desiredPages.put(page.getIndex(), page);
         }
 
-        RenderThumbnailsTask newRenderTask = new RenderThumbnailsTask(thumbPages);
-        if(renderThumbnailsTask != null) {
-            cancelRendering(renderedThumbnails, toRenderParts, renderThumbnailsTask, newRenderTask,
-                    thumbnailExecutor, "Rendered thumbnails : ");
-        } else {
-            recycleUnusedParts(renderedThumbnails, toRenderParts);
-            logRenderedContent("Rendered thumbnails : ", renderedThumbnails);
-            newRenderTask.executeOnExecutor(thumbnailExecutor, toRenderParts);
+        recycleUnusedParts(renderedThumbnails, desiredParts);
+        if(RenderTrace.VERBOSE) {
+            dumpParts("Rendered thumbnails : ", renderedThumbnails);
         }
+        for (int i = pendingThumbnails.size() - 1; i >= 0; i--) {
+            ThumbnailRequest request = pendingThumbnails.valueAt(i);
+            if(desiredPages.get(request.page.getIndex()) != request.page && scheduler.cancel(request)) {
+                pendingThumbnails.removeAt(i);
+            }
+        }
+        for (Page page : thumbPages) {
+            if(isRegistered(renderedThumbnails, page.getThumbnail())) {
+                continue;
+            }
+            ThumbnailRequest request = pendingThumbnails.get(page.getIndex());
+            if(request != null) {
+                request.restore();
+            } else {
+                request = new ThumbnailRequest(page);
+                pendingThumbnails.put(page.getIndex(), request);
+                scheduler.submit(request);
+            }
+        }
+        scheduler.reprioritize();
     }
 
-    private void recycleUnusedParts(List<PagePart> rendered, List<PagePart> toRenderParts) {
-        List<PagePart> toRecycle = new ArrayList<>();
-        for (PagePart pPart : rendered) {
-            if(toRenderParts.contains(pPart)) {
-                continue;
+    /**
+     * Returns {@code true} if every page of the window has a rendered thumbnail or a pending request
+     * for it, so requesting the same window again would do nothing.
+     */
+    public boolean isThumbnailWindowSettled(List<Page> thumbPages) {
+        for (int i = 0, n = thumbPages.size(); i < n; i++) {
+            Page page = thumbPages.get(i);
+            if(!isRegistered(renderedThumbnails, page.getThumbnail())
+                    && pendingThumbnails.get(page.getIndex()) == null) {
+                return false;
             }
-            toRecycle.add(pPart);
         }
+        return true;
+    }
 
-        if(rendered == renderedThumbnails && toRecycle.size() != 0) {
-            logRenderedContent("Recycle thumbnails: ", toRecycle);
+    private static void register(LongHashMap<PagePart> registry, PagePart part) {
+        if(part != null) {
+            registry.put(part.getPackedKey(), part);
         }
+    }
+
+    private static boolean isRegistered(LongHashMap<PagePart> registry, PagePart part) {
+        return part != null && part.equals(registry.get(part.getPackedKey()));
+    }
 
-        for (PagePart pPart : toRecycle) {
-            pPart.recycle(cache);
-            rendered.remove(pPart);
+    private void recycleUnusedParts(LongHashMap<PagePart> rendered, LongHashMap<PagePart> desired) {
+        RenderTrace.begin(RenderTrace.RECYCLE);
+        for (int i = 0; i < rendered.capacity(); i++) {
+            PagePart pPart = rendered.valueAt(i);
+            if(pPart == null || isRegistered(desired, pPart)) {
+                continue;
+            }
+            if(RenderTrace.VERBOSE) {
+                Log.v(TAG, "Recycle part " + pPart.index + ":" + pPart.getBounds());
+            }
+            pPart.recycle(tileCache);
+            rendered.remove(rendered.keyAt(i));
         }
+        RenderTrace.end();
     }
 
-    private void cancelRendering(final List<PagePart> renderedParts, final List<PagePart> toRenderParts, RenderTask cancelRenderTask, final RenderTask newRenderTask, final ThreadPoolExecutor executor, final String message) {
-        cancelRenderTask.setCancelListener(new Runnable() {
-            @Override
-            public void run() {
-                recycleUnusedParts(renderedParts, toRenderParts);
-                logRenderedContent(message, renderedParts);
-                newRenderTask.executeOnExecutor(executor, toRenderParts);
+    private void dumpParts(String message, LongHashMap<PagePart> pageParts) {
+        StringBuilder builder = new StringBuilder(message);
+        for (int i = 0; i < pageParts.capacity(); i++) {
+            PagePart pPart = pageParts.valueAt(i);
+            if(pPart != null) {
+                builder.append(pPart.index).append(":").append(pPart.getBounds()).append(" ");
             }
-        });
-        if(!cancelRenderTask.isCancelled()) {
-            cancelRenderTask.cancel(false);
+        }
+        Log.v(TAG, builder.toString());
+    }
+
+    /**
+     * Number of screen sized thumbnails that fit half of the render memory budget, bounds the
+     * thumbnail prefetch window.
+     */
+    public int getMaxThumbnailCount(Bitmap.Config config) {
+        long thumbnailSize = (long) renderer.getRenderWidth() * renderer.getRenderHeight()
+                * BitmapCache.bytesPerPixel(config);
+        return thumbnailSize == 0 ? Integer.MAX_VALUE : (int) (cacheSize * 1024L / 2 / thumbnailSize);
+    }
+
+    public void fillStats(PdfViewStats.Builder builder) {
+        builder.setLatencies(RenderStats.getLatencyBounds(),
+                stats.getLatencyHistogram(RenderStats.TIER_THUMBNAIL),
+                stats.getLatencyHistogram(RenderStats.TIER_CONTENT))
+                .setTiles(stats.getRenderedCount(), stats.getCancelledCount(), stats.getWastedCount())
+                .setPool(cache.getHitCount(), cache.getMissCount(), cache.getSize(), tileCache.getBytesInUse())
+                .setPdfiumCpuTime(stats.getPdfiumCpuTime());
+        CompressedTileCache compressedCache = tileCache.getCompressedCache();
+        if(compressedCache != null) {
+            builder.setCompressedTier(compressedCache.getHitCount(), compressedCache.getMissCount(),
+                    compressedCache.getAverageCompressNanos(), compressedCache.getAverageDecompressNanos(),
+                    compressedCache.getCompressionRatio());
         }
     }
 
@@ -117,213 +217,405 @@ public class PdfViewRenderManager {
     }
 
     public void renderContent(List<Page> renderingPages) {
-        List<PagePart> toRenderParts = new ArrayList<>();
+        desiredParts.clear();
+        boolean allRendered = pendingContent.isEmpty()
+                && pendingPreviews.size() == 0 && renderedPreviews.size() == 0;
+        RenderTrace.begin(RenderTrace.LAYOUT);
         for (Page page: renderingPages) {
             page.prepareActualParts();
-            toRenderParts.addAll(page.getParts());
-        }
-        boolean allRendered = true;
-        for (PagePart pPart : toRenderParts) {
-            if(!renderedContentParts.contains(pPart)) {
-                allRendered = false;
-                break;
+            List<PagePart> parts = page.getParts();
+            for (int i = 0; i < parts.size(); i++) {
+                PagePart pPart = adoptPart(page, i, parts.get(i));
+                register(desiredParts, pPart);
+                allRendered = allRendered && isRegistered(renderedContentParts, pPart);
             }
         }
+        RenderTrace.end();
         if(allRendered) {
             return;
         }
-        RenderContentTask newRenderTask = new RenderContentTask();
-        if(renderContentTask != null) {
-            cancelRendering(renderedContentParts, toRenderParts, renderContentTask, newRenderTask,
-                    contentExecutor, "Rendered content : ");
-        } else {
-            recycleUnusedParts(renderedContentParts, toRenderParts);
-            logRenderedContent("Rendered content : ", renderedContentParts);
-            newRenderTask.executeOnExecutor(contentExecutor, toRenderParts);
+        recycleUnusedParts(renderedContentParts, desiredParts);
+        for (int i = 0; i < pendingContent.capacity(); i++) {
+            ContentRequest request = pendingContent.valueAt(i);
+            if(request != null && !isRegistered(desiredParts, request.part) && scheduler.cancel(request)) {
+                pendingContent.remove(pendingContent.keyAt(i));
+            }
         }
-    }
-
-    public void draw(Canvas canvas, List<Page> pages) {
-        for (Page p : pages) {
-            p.drawThumbnail(canvas);
-            for (PagePart pPart : p.getParts()) {
-                pPart.drawPart(canvas, p.getScale(), p.getRenderLeft(), p.getRenderTop());
+        releaseUnusedPreviews(renderingPages);
+        for (Page page : renderingPages) {
+            boolean complete = true;
+            for (PagePart pPart : page.getParts()) {
+                if(isRegistered(renderedContentParts, pPart)) {
+                    continue;
+                }
+                complete = false;
+                ContentRequest request = pendingContent.get(pPart.getPackedKey());
+                if(request != null && request.part == pPart) {
+                    request.restore();
+                } else {
+                    if(request != null) {
+                        scheduler.cancel(request);
+                    }
+                    request = new ContentRequest(page, pPart);
+                    pendingContent.put(pPart.getPackedKey(), request);
+                    scheduler.submit(request);
+                }
             }
+            updatePreview(page, !complete && renderer.isProgressiveRendering()
+                    && page.getScale() * PREVIEW_RATIO > 1);
+        }
+        scheduler.reprioritize();
+        if(RenderTrace.VERBOSE) {
+            dumpParts("Rendered content : ", renderedContentParts);
         }
     }
 
-    private void logRenderedContent(String message, List<PagePart> pageParts) {
-        StringBuilder builder = new StringBuilder();
-        builder.append(message);
-        for (PagePart pPart : pageParts) {
-            builder.append(pPart.index).append(":").append(pPart.getScaledBounds(1)).append(" ");
-        }
-        Log.d(TAG, builder.toString());
+    /**
+     * A page creates a new part when a dropped part becomes visible again. Puts the instance that is
+     * already rendered or being rendered for it back into the page, so the page draws the instance
+     * its bitmap is delivered to.
+     */
+    private PagePart adoptPart(Page page, int position, PagePart pPart) {
+        PagePart existing = renderedContentParts.get(pPart.getPackedKey());
+        if(existing == null || !existing.equals(pPart)) {
+            ContentRequest request = pendingContent.get(pPart.getPackedKey());
+            existing = request != null ? request.part : null;
+        }
+        if(existing != null && existing != pPart && existing.equals(pPart)) {
+            page.setPart(position, existing);
+            return existing;
+        }
+        return pPart;
     }
 
-    public void recycle() {
-        if(renderContentTask != null) {
-            renderContentTask.cancel(true);
+    /**
+     * Requests preview of the page or releases it once the page is covered by full resolution parts.
+     */
+    private void updatePreview(Page page, boolean wanted) {
+        int index = page.getIndex();
+        PagePart preview = wanted ? page.preparePreview(PREVIEW_RATIO) : null;
+        if(!wanted) {
+            page.clearPreview();
+        }
+        PagePart rendered = renderedPreviews.get(index);
+        if(rendered != null && rendered != preview) {
+            rendered.release(tileCache);
+            renderedPreviews.remove(index);
+        }
+        PreviewRequest pending = pendingPreviews.get(index);
+        if(pending != null && pending.part != preview) {
+            scheduler.cancel(pending);
+            pendingPreviews.remove(index);
+            pending = null;
+        }
+        if(preview != null && pending == null && !preview.isRendered()) {
+            PreviewRequest request = new PreviewRequest(page, preview);
+            pendingPreviews.put(index, request);
+            scheduler.submit(request);
         }
+    }
 
-        if(renderThumbnailsTask != null) {
-            renderThumbnailsTask.cancel(true);
+    private void releaseUnusedPreviews(List<Page> renderingPages) {
+        int first = renderingPages.isEmpty() ? 0 : renderingPages.get(0).getIndex();
+        int last = renderingPages.isEmpty() ? -1 : renderingPages.get(renderingPages.size() - 1).getIndex();
+        for (int i = renderedPreviews.size() - 1; i >= 0; i--) {
+            int index = renderedPreviews.keyAt(i);
+            if(index < first || index > last) {
+                renderedPreviews.valueAt(i).release(tileCache);
+                renderedPreviews.removeAt(i);
+            }
+        }
+        for (int i = pendingPreviews.size() - 1; i >= 0; i--) {
+            int index = pendingPreviews.keyAt(i);
+            if(index < first || index > last) {
+                scheduler.cancel(pendingPreviews.valueAt(i));
+                pendingPreviews.removeAt(i);
+            }
         }
+    }
 
-        for (PagePart thumbnail : renderedThumbnails) {
-            thumbnail.recycle(cache);
+    /**
+     * Draws pages {@code first..last}, allocates nothing.
+     */
+    public void draw(Canvas canvas, List<Page> pages, int first, int last) {
+        RenderTrace.begin(RenderTrace.DRAW);
+        for (int i = first; i <= last; i++) {
+            pages.get(i).draw(canvas);
         }
+        RenderTrace.end();
+    }
 
-        for (PagePart content : renderedContentParts) {
-            content.recycle(cache);
+    /**
+     * Sheds memory according to the trim level. While the UI is visible pooled bitmaps go first, then
+     * cached tiles, then off-screen thumbnails. Once the UI is hidden everything but the visible
+     * thumbnails is dropped without scheduling renders, missing thumbnails are requested again on the
+     * next scroll.
+     */
+    void trimMemory(int level) {
+        Log.i(TAG, "Trim memory, level " + level);
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_UI_HIDDEN) {
+            cache.evictAll();
+            tileCache.evictAll();
+            if(level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+                recycleOffscreenThumbnails();
+            }
+            return;
+        }
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            recycleOffscreenThumbnails();
+            renderer.invalidateThumbnailWindow();
+        }
+        if(level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            tileCache.evictAll();
         }
         cache.evictAll();
     }
 
-    public class RenderTask extends AsyncTask<List<PagePart>, PagePart, PagePart> {
+    private void recycleOffscreenThumbnails() {
+        for (int i = 0; i < renderedThumbnails.capacity(); i++) {
+            PagePart thumbnail = renderedThumbnails.valueAt(i);
+            if(thumbnail != null && !renderer.isPageVisible(thumbnail.index)) {
+                thumbnail.release(tileCache);
+                renderedThumbnails.remove(renderedThumbnails.keyAt(i));
+            }
+        }
+    }
 
-        private Runnable onCancel;
+    public void recycle() {
+        if(memoryCallbacks != null) {
+            context.unregisterComponentCallbacks(memoryCallbacks);
+        }
+        scheduler.shutdown();
+        RenderTrace.begin(RenderTrace.RECYCLE);
+        pendingThumbnails.clear();
+        pendingContent.clear();
+        pendingPreviews.clear();
 
-        public void setCancelListener(Runnable onCancel) {
-            this.onCancel = onCancel;
+        recycleAll(renderedThumbnails);
+        recycleAll(renderedContentParts);
+        for (int i = 0; i < renderedPreviews.size(); i++) {
+            renderedPreviews.valueAt(i).release(tileCache);
         }
+        renderedPreviews.clear();
+        tileCache.evictAll();
+        if(tileCache.getCompressedCache() != null) {
+            tileCache.getCompressedCache().shutdown();
+        }
+        if(tileCache.getDiskCache() != null) {
+            tileCache.getDiskCache().shutdown();
+        }
+        cache.evictAll();
+        RenderTrace.end();
+    }
 
-        @Override
-        protected PagePart doInBackground(List<PagePart>... params) {
-            List<PagePart> parts = params[0];
-            if(isCancelled()) {
-                return null;
+    private void recycleAll(LongHashMap<PagePart> rendered) {
+        for (int i = 0; i < rendered.capacity(); i++) {
+            PagePart pPart = rendered.valueAt(i);
+            if(pPart != null) {
+                pPart.recycle(tileCache);
             }
-            for (PagePart part : parts) {
-                if (part.isRendered()) {
-                    continue;
-                }
-                part.renderPart(document, pdfium, cache);
-                if(isCancelled()) {
-                    return part;
-                } else {
-                    publishProgress(part);
-                }
-            }
-            return null;
         }
+        rendered.clear();
+    }
 
+    private void notifyPartUpdated(Page page, PagePart part) {
+        Rect dirty = part.getScaledBounds(page.getScale());
+        dirty.offset(page.getRenderLeft(), page.getRenderTop());
+        renderer.notifyUpdate(dirty);
+    }
 
-        @Override
-        protected void onCancelled() {
-            super.onCancelled();
-            if(onCancel != null) {
-                onCancel.run();
-                onCancel = null;
+    /**
+     * Resolves sizes of the pages, serialized with stub pages resolved by render workers. Sizes of
+     * the pages must already be known, so no pdfium call is made under the lock.
+     */
+    public void preparePages(List<Page> pages, int[] indices) {
+        synchronized (layoutLock) {
+            for (int index : indices) {
+                pages.get(index).preparePage();
             }
         }
+    }
 
+    public boolean isRendering() {
+        return scheduler.isBusy();
+    }
 
-        @Override
-        @CallSuper
-        protected void onPostExecute(PagePart pagePart) {
-           renderer.notifyUpdate();
-        }
+    private long priority(int tier, Page page, int centerX, int centerY) {
+        long distance = Math.abs(page.getRenderLeft() + centerX - renderer.getFocusX())
+                + Math.abs(page.getRenderTop() + centerY - renderer.getFocusY());
+        return ((long) tier << 32) + Math.min(distance, Integer.MAX_VALUE);
     }
 
+    public class ThumbnailRequest extends RenderRequest {
 
-    public class RenderThumbnailsTask extends RenderTask {
+        private final Page page;
+        private final Bitmap.Config config;
+        private PagePart thumbnail;
+        private boolean pagePrepared;
 
-        private final List<Page> pages;
+        public ThumbnailRequest(Page page) {
+            this.page = page;
+            this.config = renderer.getThumbnailBitmapConfig();
+        }
 
-        public RenderThumbnailsTask(List<Page> pages) {
-            this.pages = pages;
+        @Override
+        protected int getStatsTier() {
+            return RenderStats.TIER_THUMBNAIL;
         }
 
         @Override
-        protected void onPreExecute() {
-            renderThumbnailsTask = this;
+        protected void render() {
+            // resolve the size before taking the lock, pdfium may block on its global lock
+            Point pageSize = page.isNotStub() ? null : renderer.getPageSize(page.getIndex());
+            synchronized (layoutLock) {
+                if(!page.isNotStub()) {
+                    page.preparePage(pageSize);
+                    renderer.pageSizeUpdated(page, 0);
+                    pagePrepared = true;
+                }
+                thumbnail = page.getThumbnail();
+            }
+            if(thumbnail.isRendered()) {
+                return;
+            }
+            thumbnail.renderPart(document, pdfium, tileCache, config, null, null, stats);
+            grayscaleDetector.detect(thumbnail.index, thumbnail.getRenderedBitmap());
         }
 
         @Override
-        protected void onCancelled(PagePart pagePart) {
-            if(pagePart != null) {
-                renderedThumbnails.add(pagePart);
+        protected void onRendered() {
+            if(pendingThumbnails.get(page.getIndex()) == this) {
+                pendingThumbnails.remove(page.getIndex());
+            }
+            if(isCancelled()) {
+                if(thumbnail != null) {
+                    thumbnail.recycle(tileCache);
+                }
+                return;
+            }
+            if(thumbnail.isRendered() && !isRegistered(renderedThumbnails, thumbnail)) {
+                register(renderedThumbnails, thumbnail);
+            }
+            if(pagePrepared) {
+                // resolved page size moves all following pages
                 renderer.notifyUpdate();
+            } else {
+                notifyPartUpdated(page, thumbnail);
             }
-            logRenderedContent("Rendered thumbnails : ", renderedThumbnails);
-            onCancelled();
         }
 
         @Override
-        protected PagePart doInBackground(List<PagePart>... params) {
-            params[0].clear();
-            for (Page page : pages) {
-                if(!page.isNotStub()) {
-                    page.preparePage();
-                    renderer.pageSizeUpdated(page, 0);
-                }
-                params[0].add(page.getThumbnail());
+        protected long computePriority() {
+            if(renderer.isPageLanding(page.getIndex())) {
+                return ((long) TIER_LANDING_THUMBNAIL << 32) + page.getIndex();
             }
-            return super.doInBackground(params);
+            int tier = renderer.isPageVisible(page.getIndex()) ? TIER_VISIBLE_THUMBNAIL : TIER_OFFSCREEN_THUMBNAIL;
+            return priority(tier, page, renderer.getRenderWidth() / 2, (page.getBottom() - page.getTop()) / 2);
+        }
+    }
+
+    public class ContentRequest extends RenderRequest {
+
+        private final Page page;
+        private final PagePart part;
+        private final Bitmap.Config config;
+
+        public ContentRequest(Page page, PagePart part) {
+            this.page = page;
+            this.part = part;
+            this.config = renderer.getContentBitmapConfig();
         }
 
         @Override
-        protected void onProgressUpdate(PagePart... values) {
-            for (PagePart value : values) {
-                renderedThumbnails.add(value);
+        protected void render() {
+            if(part.isRendered()) {
+                return;
             }
-            renderer.notifyUpdate();
-            logRenderedContent("Rendered thumbnails Progress : ", renderedThumbnails);
+            part.renderPart(document, pdfium, tileCache, config, grayscaleDetector, uniformTileDetector, stats);
         }
 
         @Override
-        protected void onPostExecute(PagePart aVoid) {
-            super.onPostExecute(aVoid);
-            renderer.notifyUpdate();
-            renderThumbnailsTask = null;
+        protected void onRendered() {
+            if(pendingContent.get(part.getPackedKey()) == this) {
+                pendingContent.remove(part.getPackedKey());
+            }
+            if(isCancelled()) {
+                part.recycle(tileCache);
+                return;
+            }
+            if(part.isRendered() && !isRegistered(renderedContentParts, part)) {
+                PagePart replaced = renderedContentParts.put(part.getPackedKey(), part);
+                if(replaced != null) {
+                    replaced.recycle(tileCache);
+                }
+            }
+            notifyPartUpdated(page, part);
         }
 
         @Override
-        protected void onCancelled() {
-            renderThumbnailsTask = null;
-            super.onCancelled();
+        protected long computePriority() {
+            Rect bounds = part.getScaledBounds(page.getScale());
+            return priority(TIER_VISIBLE_CONTENT, page, bounds.centerX(), bounds.centerY());
         }
     }
 
-    public class RenderContentTask extends RenderTask {
+    public class PreviewRequest extends RenderRequest {
+
+        private final Page page;
+        private final PagePart part;
+        private final Bitmap.Config config;
+
+        public PreviewRequest(Page page, PagePart part) {
+            this.page = page;
+            this.part = part;
+            this.config = renderer.getContentBitmapConfig();
+        }
 
         @Override
-        protected void onPreExecute() {
-            renderContentTask = this;
+        protected void render() {
+            if(part.isRendered()) {
+                return;
+            }
+            part.renderPart(document, pdfium, tileCache, config, grayscaleDetector, null, stats);
         }
 
         @Override
-        protected void onCancelled(PagePart pagePart) {
-            if(pagePart != null) {
-                renderedContentParts.add(pagePart);
-                renderer.notifyUpdate();
+        protected void onRendered() {
+            if(pendingPreviews.get(page.getIndex()) == this) {
+                pendingPreviews.remove(page.getIndex());
             }
-            logRenderedContent("Rendered content : ", renderedContentParts);
-            onCancelled();
+            if(isCancelled() || page.getPreview() != part) {
+                part.release(tileCache);
+                return;
+            }
+            if(part.isRendered()) {
+                renderedPreviews.put(page.getIndex(), part);
+            }
+            notifyPartUpdated(page, part);
+        }
+
+        @Override
+        protected long computePriority() {
+            Rect bounds = part.getScaledBounds(page.getScale());
+            return priority(TIER_PREVIEW, page, bounds.centerX(), bounds.centerY());
         }
+    }
+
+    @TargetApi(Build.VERSION_CODES.ICE_CREAM_SANDWICH)
+    private class MemoryCallbacks implements ComponentCallbacks2 {
 
         @Override
-        protected void onCancelled() {
-            renderContentTask = null;
-            super.onCancelled();
+        public void onTrimMemory(int level) {
+            trimMemory(level);
         }
 
         @Override
-        protected void onProgressUpdate(PagePart... values) {
-            for (PagePart value : values) {
-                renderedContentParts.add(value);
-            }
-            renderer.notifyUpdate();
-            logRenderedContent("Rendered content : ", renderedContentParts);
+        public void onLowMemory() {
+            trimMemory(TRIM_MEMORY_COMPLETE);
         }
 
         @Override
-        protected void onPostExecute(PagePart aVoid) {
-            super.onPostExecute(aVoid);
-            renderContentTask = null;
+        public void onConfigurationChanged(Configuration newConfig) {
         }
     }
 }
-
-
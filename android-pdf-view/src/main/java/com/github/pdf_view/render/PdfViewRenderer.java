@@ -1,12 +1,14 @@
 package com.github.pdf_view.render;
 
 import android.content.Context;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
 import android.graphics.Matrix;
 import android.graphics.Paint;
 import android.graphics.Point;
 import android.graphics.PorterDuff;
 import android.graphics.PorterDuffXfermode;
+import android.graphics.Rect;
 import android.net.Uri;
 import android.os.AsyncTask;
 import android.os.Build;
@@ -14,10 +16,15 @@ import android.os.Handler;
 import android.os.HandlerThread;
 import android.os.ParcelFileDescriptor;
 import android.os.Parcelable;
+import android.os.Process;
+import android.text.TextUtils;
+import android.util.Log;
 import android.view.Display;
 import android.view.WindowManager;
 
 import com.github.pdf_view.PdfViewConfiguration;
+import com.github.pdf_view.PdfViewStats;
+import com.github.pdf_view.utils.RenderTrace;
 import com.shockwave.pdfium.PdfDocument;
 import com.shockwave.pdfium.PdfiumCore;
 
@@ -31,7 +38,11 @@ import java.util.List;
  * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
  * @since Sep 14, 2016
  */
-public class PdfViewRenderer implements RenderInfo {
+public class PdfViewRenderer implements RenderInfo, PageSizeScanner.Listener {
+    private static final String TAG = PdfViewRenderer.class.getSimpleName();
+    private static final String TILE_CACHE_DIRECTORY = "pdf_view_tiles";
+    private static final String METADATA_DIRECTORY = "pdf_view_metadata";
+
     private int firstVisiblePage;
     private int lastVisiblePage;
 
@@ -42,6 +53,7 @@ public class PdfViewRenderer implements RenderInfo {
     PdfiumCore pdfiumCore;
 
     private Matrix matrix = new Matrix();
+    private final float[] matrixValues = new float[9];
 
     private float scale = 1f;
 
@@ -49,6 +61,7 @@ public class PdfViewRenderer implements RenderInfo {
     private int renderHeight;
 
     private List<Page> pages;
+    private PageLayout layout;
 
     private float optimalScale;
     private int scrollY;
@@ -57,8 +70,18 @@ public class PdfViewRenderer implements RenderInfo {
     private int offsetTop;
     private int offsetLeft;
 
+    private int focusX;
+    private int focusY;
+
     private Paint paint;
     private HandlerThread handlerThread;
+    private Handler scanHandler;
+    private PageSizeTable pageSizes;
+    private PageSizeScanner pageSizeScanner;
+    private final DocumentMetadataStore metadataStore;
+    private String fingerprint;
+    private DocumentMetadata metadata;
+    private DocumentMetadata lastPosition;
 
     private final static float PAGE_PART_TO_SCREEN_RATIO = 3F;
 
@@ -67,8 +90,21 @@ public class PdfViewRenderer implements RenderInfo {
     private int pagePartHeight;
 
     private static final int RENDERED_THUMBNAIL_MARGIN = 3;
+    private static final int PREFETCH_AHEAD_MARGIN = 6;
+    private static final int PREFETCH_BEHIND_MARGIN = 1;
+
+    private int scrollDirection;
+    private int landingFirstPage = -1;
+    private int landingLastPage = -1;
+    private final List<Page> thumbnailWindow = new ArrayList<>();
+    private int windowStart = -1;
+    private int windowEnd = -1;
+    private int windowLandingFirst = -1;
+    private int windowLandingLast = -1;
 
     private PdfViewRenderManager pdfRenderManager;
+    private final FrameInvalidator frameInvalidator;
+    private DiskTileCache diskTileCache;
     private float maxAvailableScale;
     private int maxAvilibleScale;
 
@@ -76,9 +112,17 @@ public class PdfViewRenderer implements RenderInfo {
         pdfiumCore = new PdfiumCore(context);
         this.context = context;
         this.listener = listener;
+        frameInvalidator = new FrameInvalidator(new FrameInvalidator.Target() {
+            @Override
+            public void onInvalidate(Rect dirty) {
+                PdfViewRenderer.this.listener.onPageUpdated(dirty);
+            }
+        });
         paint = new Paint();
-        handlerThread = new HandlerThread(getClass().getSimpleName());
+        handlerThread = new HandlerThread(getClass().getSimpleName(), Process.THREAD_PRIORITY_BACKGROUND);
         handlerThread.start();
+        scanHandler = new Handler(handlerThread.getLooper());
+        metadataStore = new DocumentMetadataStore(new File(context.getCacheDir(), METADATA_DIRECTORY));
         paint.setXfermode(new PorterDuffXfermode(PorterDuff.Mode.ADD));
 
         WindowManager wm = (WindowManager) context.getSystemService(Context.WINDOW_SERVICE);
@@ -105,6 +149,14 @@ public class PdfViewRenderer implements RenderInfo {
                 try {
                     pdfDocument = pdfiumCore.newDocument(getSeekableFileDescriptor(
                             configuration.getUri().toString()), configuration.getPassword());
+                    fingerprint = computeFingerprint(configuration);
+                    metadata = fingerprint == null ? null
+                            : metadataStore.read(fingerprint, pdfiumCore.getPageCount(pdfDocument));
+                    if(metadata != null && !matchesDocument(metadata, configuration)) {
+                        Log.w(TAG, "Stored metadata does not match the document, ignoring it");
+                        metadata = null;
+                    }
+                    diskTileCache = createDiskTileCache(configuration);
                     return pdfDocument;
                 } catch (final IOException e) {
                     new Handler(context.getMainLooper()).post(new Runnable() {
@@ -123,13 +175,86 @@ public class PdfViewRenderer implements RenderInfo {
                     return;
                 }
                 initialPage = configuration.getStartPage();
-                pdfRenderManager = new PdfViewRenderManager(document, pdfiumCore, PdfViewRenderer.this);
+                if(metadata != null && configuration.isRestoreLastPosition()) {
+                    lastPosition = metadata;
+                }
+                pdfRenderManager = new PdfViewRenderManager(context, document, pdfiumCore,
+                        PdfViewRenderer.this, diskTileCache);
+                startPageSizeScan(document);
                 configuration.notifyPageLoaded(pdfiumCore.getPageCount(pdfDocument));
                 listener.onDocumentReady(PdfViewRenderer.this, configuration);
             }
         }.execute();
     }
 
+    /**
+     * Checks stored sizes of the first, the last and the start page against pdfium, so metadata of a
+     * changed document is never trusted.
+     */
+    private boolean matchesDocument(DocumentMetadata metadata, PdfViewConfiguration configuration) {
+        PageSizeTable storedSizes = metadata.getPageSizes();
+        int lastPage = storedSizes.getPageCount() - 1;
+        if(lastPage < 0) {
+            return true;
+        }
+        int startPage = configuration.isRestoreLastPosition() ? metadata.getPage() : configuration.getStartPage();
+        return matchesPage(storedSizes, 0) && matchesPage(storedSizes, lastPage)
+                && matchesPage(storedSizes, Math.min(Math.max(startPage, 0), lastPage));
+    }
+
+    private boolean matchesPage(PageSizeTable storedSizes, int index) {
+        Point size = new Point();
+        if(!storedSizes.get(index, size)) {
+            return true;
+        }
+        pdfiumCore.openPage(pdfDocument, index);
+        return size.x == Math.max(pdfiumCore.getPageWidth(pdfDocument, index), 1)
+                && size.y == pdfiumCore.getPageHeight(pdfDocument, index);
+    }
+
+    private void startPageSizeScan(PdfDocument document) {
+        if(pageSizeScanner != null) {
+            pageSizeScanner.cancel();
+        }
+        int pageCount = pdfiumCore.getPageCount(document);
+        pageSizes = metadata != null ? metadata.getPageSizes() : new PageSizeTable(pageCount);
+        metadata = null;
+        if(pageSizes.getKnownCount() == pageCount) {
+            pageSizeScanner = null;
+            return;
+        }
+        int startPage = lastPosition != null ? lastPosition.getPage() : initialPage;
+        pageSizeScanner = new PageSizeScanner(pdfiumCore, pageSizes,
+                Math.min(Math.max(startPage, 0), pageCount - 1), this);
+        scanHandler.post(pageSizeScanner);
+    }
+
+    private DiskTileCache createDiskTileCache(PdfViewConfiguration configuration) {
+        if(configuration.getDiskTileCacheSize() <= 0 || fingerprint == null
+                || !TextUtils.isEmpty(configuration.getPassword())) {
+            return null;
+        }
+        return new DiskTileCache(new File(context.getCacheDir(), TILE_CACHE_DIRECTORY), fingerprint,
+                configuration.getDiskTileCacheSize());
+    }
+
+    private String computeFingerprint(PdfViewConfiguration configuration) {
+        ParcelFileDescriptor fileDescriptor = null;
+        try {
+            fileDescriptor = getSeekableFileDescriptor(configuration.getUri().toString());
+            return DocumentFingerprint.compute(fileDescriptor);
+        } catch (IOException e) {
+            Log.w(TAG, "Disk tile cache and document metadata are disabled", e);
+            return null;
+        } finally {
+            if(fileDescriptor != null) {
+                try {
+                    fileDescriptor.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
 
     public void onViewSizeChanged(int width, int height) {
         if(width == 0 || height == 0) {
@@ -143,24 +268,37 @@ public class PdfViewRenderer implements RenderInfo {
         optimalScale = (float) renderWidth / getPageSize(initialPage).x;
         preparePages();
         scrollToPage(initialPage);
+        restoreLastPosition();
         updateQuality();
     }
 
+    private void restoreLastPosition() {
+        DocumentMetadata position = lastPosition;
+        lastPosition = null;
+        if(position == null || position.getPage() < 0 || position.getPage() >= pages.size()) {
+            return;
+        }
+        scaleTo(0, 0, position.getScale());
+        scrollTo((int) (position.getOriginalScrollX() * optimalScale * scale),
+                pages.get(position.getPage()).getTop()
+                        + (int) (position.getOriginalScrollY() * optimalScale * scale));
+    }
+
     private void preparePages() {
         int pageCount = pdfiumCore.getPageCount(pdfDocument);
         pages = new ArrayList(pageCount);
-        Page page = null;
+        layout = new PageLayout(this, pageCount, new StubPageSizeResolver().getOriginalHeight(this));
         for(int i = 0; i < pageCount; i++) {
-            Page newPage = new Page(i, this);
-            if(page != null) {
-                page.setNextPage(newPage);
-                newPage.setPreviousPage(page);
-            }
-            page = newPage;
-            pages.add(page);
+            pages.add(new Page(i, this, layout));
         }
         initialPage = configuration.getStartPage();
         pages.get(initialPage).preparePage();
+        for (int i = 0; i < pageCount; i++) {
+            if(pageSizes.isKnown(i)) {
+                pages.get(i).preparePage();
+            }
+        }
+        invalidateThumbnailWindow();
     }
 
     public int getHorizontalScrollExtent() {
@@ -234,45 +372,34 @@ public class PdfViewRenderer implements RenderInfo {
 
     @Override
     public Point getPageSize(int index) {
-        pdfiumCore.openPage(pdfDocument, index);
         Point result = new Point();
+        if(pageSizes.get(index, result)) {
+            return result;
+        }
+        pdfiumCore.openPage(pdfDocument, index);
         result.x = pdfiumCore.getPageWidth(pdfDocument, index);
         result.y = pdfiumCore.getPageHeight(pdfDocument, index);
+        pageSizes.set(index, result.x, result.y);
         return result;
     }
 
     private List<Page> getRenderingPages() {
-        int firstRenderedPage = getFirstRenderedPageIndex(firstVisiblePage);
+        int firstRenderedPage = getFirstRenderedPageIndex();
         int lastRenderedPage = getLastRenderedPageIndex(firstRenderedPage);
         return pages.subList(firstRenderedPage, lastRenderedPage + 1);
     }
 
-    private int getFirstRenderedPageIndex(int firstVisiblePage) {
-        if(pages.get(firstVisiblePage).getTop() >= scrollY) {
-            return searchFirstPageNegative(firstVisiblePage);
-        }
-        if(pages.get(firstVisiblePage).getBottom() < scrollY) {
-            return searchFirstPagePositive(++firstVisiblePage);
-        }
-        return firstVisiblePage;
-    }
-
-    private int searchFirstPagePositive(int firstVisiblePage) {
-            if(pages.get(firstVisiblePage).getBottom() >= scrollY) {
-                return firstVisiblePage ;
-            }
-            return firstVisiblePage == getLastPageIndex() ? firstVisiblePage
-                    : searchFirstPagePositive(++firstVisiblePage);
-    }
-
-    private int searchFirstPageNegative(int firstVisiblePage) {
-        if(pages.get(firstVisiblePage).getBottom() <= scrollY) {
-            return firstVisiblePage + 1;
-        }
-        return firstVisiblePage == 0 ?  0 : searchFirstPageNegative(--firstVisiblePage);
+    /**
+     * Returns first page that reaches the top edge of the viewport, skipping a page that ends in the
+     * spacing above it.
+     */
+    private int getFirstRenderedPageIndex() {
+        return getPageIndexAt(scrollY);
     }
 
     public void scaleBy(float focusX, float focusY, float deltaScale) {
+        this.focusX = (int) focusX;
+        this.focusY = (int) focusY;
         deltaScale = fixScale(deltaScale);
         matrix.postScale(deltaScale, deltaScale, focusX, focusY);
         this.scale = scale * deltaScale;
@@ -329,6 +456,11 @@ public class PdfViewRenderer implements RenderInfo {
     }
 
     public void recycle() {
+        frameInvalidator.cancel();
+        if(pageSizeScanner != null) {
+            pageSizeScanner.cancel();
+        }
+        saveMetadata();
         pdfRenderManager.recycle();
     }
 
@@ -338,8 +470,77 @@ public class PdfViewRenderer implements RenderInfo {
         }
     }
 
+    public int getCompressedTileCacheSize() {
+        return configuration.getCompressedTileCacheSize();
+    }
+
+    public int getRenderThreadCount() {
+        return configuration.getRenderThreadCount();
+    }
+
+    public boolean isProgressiveRendering() {
+        return configuration.isProgressiveRendering();
+    }
+
+    public Bitmap.Config getContentBitmapConfig() {
+        return configuration.getContentBitmapConfig();
+    }
+
+    public Bitmap.Config getThumbnailBitmapConfig() {
+        return configuration.getThumbnailBitmapConfig();
+    }
+
+    /**
+     * Point of interest on screen that rendering is ordered around: gesture focus while scaling,
+     * viewport centre otherwise.
+     */
+    public int getFocusX() {
+        return focusX;
+    }
+
+    public int getFocusY() {
+        return focusY;
+    }
+
+    public boolean isPageVisible(int index) {
+        return index >= firstVisiblePage && index <= lastVisiblePage;
+    }
+
+    /**
+     * Requests redraw of the view, requests made within one frame are coalesced into one.
+     */
     public void notifyUpdate() {
-        listener.onPageUpdated();
+        frameInvalidator.invalidate();
+    }
+
+    /**
+     * Requests redraw of the given screen area, off-screen areas are ignored.
+     */
+    public void notifyUpdate(Rect dirty) {
+        if(dirty.intersect(0, 0, renderWidth, renderHeight)) {
+            frameInvalidator.invalidate(dirty);
+        }
+    }
+
+    public PdfViewStats getStats() {
+        PdfViewStats.Builder builder = new PdfViewStats.Builder();
+        if(pdfRenderManager != null) {
+            pdfRenderManager.fillStats(builder);
+        }
+        int resolvedPages = 0;
+        int pageCount = pages == null ? 0 : pages.size();
+        for (int i = 0; i < pageCount; i++) {
+            if(pages.get(i).isNotStub()) {
+                resolvedPages++;
+            }
+        }
+        return builder.setPages(resolvedPages, pageCount)
+                .setFrames(frameInvalidator.getFrameCount(), frameInvalidator.getAverageFrameRequests())
+                .build();
+    }
+
+    public FrameInvalidator getFrameInvalidator() {
+        return frameInvalidator;
     }
 
     public void restoreState(PdfRendererState pdfState) {
@@ -354,13 +555,70 @@ public class PdfViewRenderer implements RenderInfo {
     }
 
     public Parcelable getCurrentState() {
-        int firstRenderedPage = getFirstRenderedPageIndex(firstVisiblePage);
+        return captureState();
+    }
+
+    private PdfRendererState captureState() {
+        int firstRenderedPage = getFirstRenderedPageIndex();
         int originalPageScrollY =
                 (int) (Math.max(scrollY - pages.get(firstRenderedPage).getTop(), 0f) / optimalScale / scale);
         int originalPageScrollX = (int) (scrollX / (optimalScale * scale));
         return new PdfRendererState(configuration.getUri(), scale, firstRenderedPage, originalPageScrollX, originalPageScrollY);
     }
 
+    /**
+     * Stores page sizes and reading position of the document on the scan thread.
+     */
+    private void saveMetadata() {
+        if(fingerprint == null || pageSizes == null || pages == null || pages.isEmpty()) {
+            return;
+        }
+        PdfRendererState state = captureState();
+        final String documentFingerprint = fingerprint;
+        final DocumentMetadata documentMetadata = new DocumentMetadata(pageSizes, state.getScale(),
+                state.getFirstRenderedPage(), (int) state.getOriginalPageScrollX(), state.getOriginalPageScrollY());
+        scanHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                metadataStore.write(documentFingerprint, documentMetadata);
+            }
+        });
+    }
+
+
+    /**
+     * Applies a batch of scanned page sizes to the layout. Scroll position is kept relative to the
+     * first visible page, so pages growing or shrinking above the viewport do not move the content.
+     */
+    @Override
+    public void onPageSizesScanned(int[] indices) {
+        if(pages == null || pages.isEmpty()) {
+            return;
+        }
+        int anchor = getFirstRenderedPageIndex();
+        int anchorOffset = scrollY - pages.get(anchor).getTop();
+        pdfRenderManager.preparePages(pages, indices);
+        int deltaY = pages.get(anchor).getTop() + anchorOffset - scrollY;
+        if(deltaY != 0) {
+            matrix.postTranslate(0, -deltaY);
+            fixTranslate();
+        }
+        invalidateThumbnailWindow();
+        updateThumbnails();
+        updateQuality();
+        notifyUpdate();
+    }
+
+    @Override
+    public PdfDocument openDocument() throws IOException {
+        return pdfiumCore.newDocument(getSeekableFileDescriptor(configuration.getUri().toString()),
+                configuration.getPassword());
+    }
+
+    @Override
+    public boolean isRenderBusy() {
+        return pdfRenderManager.isRendering();
+    }
 
     public void pageSizeUpdated(Page page, int deltaBottom) {
 //        if(optimalScale == 0) {
@@ -380,7 +638,10 @@ public class PdfViewRenderer implements RenderInfo {
 
     public interface PdfRendererListener {
          void onDocumentReady(PdfViewRenderer renderer, PdfViewConfiguration configuration);
-         void onPageUpdated();
+         /**
+          * @param dirty screen area to redraw, {@code null} to redraw the whole view
+          */
+         void onPageUpdated(Rect dirty);
     }
 
     protected ParcelFileDescriptor getSeekableFileDescriptor(String path) throws IOException {
@@ -409,11 +670,17 @@ public class PdfViewRenderer implements RenderInfo {
         if(renderHeight == 0 || renderWidth == 0) {
             return;
         }
-        List<Page> renderingPages = getRenderingPages();
-        pdfRenderManager.draw(canvas, renderingPages);
+        int firstRenderedPage = getFirstRenderedPageIndex();
+        int lastRenderedPage = getLastRenderedPageIndex(firstRenderedPage);
+        pdfRenderManager.draw(canvas, pages, firstRenderedPage, lastRenderedPage);
     }
 
     private void scrollBy(int dx, int dy) {
+        focusX = renderWidth / 2;
+        focusY = renderHeight / 2;
+        if(dy != 0) {
+            scrollDirection = dy > 0 ? 1 : -1;
+        }
         matrix.postTranslate(-dx, -dy);
         fixTranslate();
         updateThumbnails();
@@ -462,30 +729,103 @@ public class PdfViewRenderer implements RenderInfo {
 //        }
 //    }
 
+    /**
+     * Starts prefetching the area a fling is going to stop at, so its thumbnails are rendered ahead of
+     * the pages the fling only passes by.
+     */
+    public void startFling(int finalX, int finalY) {
+        int landingScrollY = getAllowedScroll(0, getMaxScrollY(), finalY);
+        scrollDirection = landingScrollY > scrollY ? 1 : (landingScrollY < scrollY ? -1 : scrollDirection);
+        landingFirstPage = getPageIndexAt(landingScrollY);
+        landingLastPage = getPageIndexAt(landingScrollY + renderHeight);
+        updateThumbnails();
+    }
+
+    /**
+     * Forces the next scroll to request thumbnails even if the window did not move, used after
+     * thumbnails were dropped to free memory.
+     */
+    public void invalidateThumbnailWindow() {
+        windowStart = -1;
+        windowEnd = -1;
+    }
+
+    public void finishFling() {
+        landingFirstPage = -1;
+        landingLastPage = -1;
+        finishScroll();
+    }
+
+    /**
+     * Drops the prefetch direction once scrolling stopped, so an idle view keeps an even thumbnail
+     * margin around the visible pages.
+     */
+    public void finishScroll() {
+        scrollDirection = 0;
+        updateThumbnails();
+    }
+
+    public boolean isPageLanding(int index) {
+        return index >= landingFirstPage && index <= landingLastPage;
+    }
+
+    private int getPageIndexAt(int offset) {
+        int index = layout.getPageAt(offset);
+        if(index < getLastPageIndex() && pages.get(index).getBottom() < offset) {
+            index++;
+        }
+        return index;
+    }
+
     private void updateThumbnails() {
-        int firstRenderedIndex = getFirstRenderedPageIndex(firstVisiblePage);
+        RenderTrace.begin(RenderTrace.LAYOUT);
+        int firstRenderedIndex = getFirstRenderedPageIndex();
         int lastRenderedIndex = getLastRenderedPageIndex(firstRenderedIndex);
-        int start = Math.max(firstRenderedIndex - RENDERED_THUMBNAIL_MARGIN, 0);
-        int end = Math.min(lastRenderedIndex + RENDERED_THUMBNAIL_MARGIN + 1, pages.size());
+        int ahead = scrollDirection == 0 ? RENDERED_THUMBNAIL_MARGIN : PREFETCH_AHEAD_MARGIN;
+        int behind = scrollDirection == 0 ? RENDERED_THUMBNAIL_MARGIN : PREFETCH_BEHIND_MARGIN;
+        int landingCount = landingFirstPage < 0 ? 0 : landingLastPage - landingFirstPage + 1;
+        int spare = pdfRenderManager.getMaxThumbnailCount(getThumbnailBitmapConfig())
+                - (lastRenderedIndex - firstRenderedIndex + 1) - landingCount;
+        behind = Math.max(Math.min(behind, spare - ahead), 0);
+        ahead = Math.max(Math.min(ahead, spare), 0);
+        int marginBefore = scrollDirection < 0 ? ahead : behind;
+        int marginAfter = scrollDirection < 0 ? behind : ahead;
+        int start = Math.max(firstRenderedIndex - marginBefore, 0);
+        int end = Math.min(lastRenderedIndex + marginAfter + 1, pages.size());
         if(firstRenderedIndex != firstVisiblePage || lastRenderedIndex != lastVisiblePage) {
             configuration.notifyPageChanged(firstRenderedIndex, lastRenderedIndex);
             firstVisiblePage = firstRenderedIndex;
             lastVisiblePage = lastRenderedIndex;
         }
-        pdfRenderManager.renderThumbnails(pages.subList(start, end));
+        if(start == windowStart && end == windowEnd
+                && landingFirstPage == windowLandingFirst && landingLastPage == windowLandingLast
+                && pdfRenderManager.isThumbnailWindowSettled(thumbnailWindow)) {
+            RenderTrace.end();
+            return;
+        }
+        windowStart = start;
+        windowEnd = end;
+        windowLandingFirst = landingFirstPage;
+        windowLandingLast = landingLastPage;
+        thumbnailWindow.clear();
+        for (int i = start; i < end; i++) {
+            thumbnailWindow.add(pages.get(i));
+        }
+        for (int i = landingFirstPage; i >= 0 && i <= landingLastPage; i++) {
+            if(i < start || i >= end) {
+                thumbnailWindow.add(pages.get(i));
+            }
+        }
+        RenderTrace.end();
+        pdfRenderManager.renderThumbnails(thumbnailWindow);
     }
 
     private int getLastRenderedPageIndex(int firstRenderedPage) {
-        for(int i = firstRenderedPage; i < pages.size(); i++) {
-            if(pages.get(i).getTop() > scrollY + renderHeight) {
-                return i - 1;
-            }
-        }
-        return getLastPageIndex();
+        return Math.max(layout.getPageAt(scrollY + renderHeight), firstRenderedPage - 1);
     }
 
     public void fixTranslate() {
-        float[] values = new float[9];
+        float[] values = matrixValues;
         matrix.getValues(values);
         if (renderWidth * scale < renderWidth) {
             scrollX = 0;
@@ -0,0 +1,66 @@
+package com.github.pdf_view.render;
+
+/**
+ * Single unit of work for the {@link RenderScheduler}. Requests with lower priority value are
+ * rendered first, requests of equal priority in submission order.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+public abstract class RenderRequest implements Comparable<RenderRequest> {
+
+    private volatile boolean cancelled;
+    private long priority;
+    long sequence;
+    long submitTime;
+
+    /**
+     * Renders requested content, called on a render thread.
+     */
+    protected abstract void render();
+
+    /**
+     * Publishes rendered content, called on the main thread. Also called for requests cancelled
+     * while in flight, so their result can be released.
+     */
+    protected abstract void onRendered();
+
+    /**
+     * Recomputes priority for the current viewport, called on the main thread.
+     */
+    protected abstract long computePriority();
+
+    /**
+     * Latency histogram of {@link RenderStats} this request is accounted in.
+     */
+    protected int getStatsTier() {
+        return RenderStats.TIER_CONTENT;
+    }
+
+    void updatePriority() {
+        priority = computePriority();
+    }
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Revokes cancellation of a request that is already in flight, its result is wanted again.
+     */
+    void restore() {
+        cancelled = false;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public int compareTo(RenderRequest another) {
+        if(priority != another.priority) {
+            return priority < another.priority ? -1 : 1;
+        }
+        return sequence < another.sequence ? -1 : (sequence == another.sequence ? 0 : 1);
+    }
+}
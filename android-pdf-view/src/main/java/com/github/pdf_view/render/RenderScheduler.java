@@ -0,0 +1,144 @@
+package com.github.pdf_view.render;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import com.github.pdf_view.utils.RenderTrace;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders {@link RenderRequest}s on background workers in priority order. Priorities of queued
+ * requests are recomputed whenever the viewport changes, so the most relevant tile is always taken
+ * next instead of waiting behind a stale batch.
+ * <p>
+ * All workers share one queue, so tiles of a page are spread across them. Pdfium itself serializes
+ * every call on a global lock, additional workers pay off by overlapping cache lookups, disk reads,
+ * decompression and post-processing with rasterization.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+public class RenderScheduler {
+
+    private final PriorityBlockingQueue<RenderRequest> queue = new PriorityBlockingQueue<>();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Thread[] workers;
+    private final AtomicInteger activeWorkers = new AtomicInteger();
+    private volatile boolean stopped;
+    private long sequence;
+    private final RenderStats stats;
+    private final List<RenderRequest> reprioritized = new ArrayList<>();
+
+    public RenderScheduler(int workerCount, RenderStats stats) {
+        this.stats = stats;
+        workers = new Thread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    processQueue();
+                }
+            }, RenderScheduler.class.getSimpleName() + "-" + i);
+            workers[i].start();
+        }
+    }
+
+    private void processQueue() {
+        while (!stopped) {
+            final RenderRequest request;
+            try {
+                request = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            final boolean rendered = !request.isCancelled();
+            if(rendered) {
+                RenderTrace.begin(RenderTrace.RENDER);
+                activeWorkers.incrementAndGet();
+                try {
+                    request.render();
+                } finally {
+                    activeWorkers.decrementAndGet();
+                    RenderTrace.end();
+                }
+                stats.recordRendered(request.getStatsTier(), System.nanoTime() - request.submitTime);
+            } else {
+                stats.recordCancelled();
+            }
+            mainHandler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if(stopped) {
+                        return;
+                    }
+                    if(!rendered && !request.isCancelled()) {
+                        // restored after the worker had already skipped it
+                        submit(request);
+                        return;
+                    }
+                    if(rendered && request.isCancelled()) {
+                        stats.recordWasted();
+                    }
+                    request.onRendered();
+                }
+            });
+        }
+    }
+
+    /**
+     * Queues request, call {@link #reprioritize()} once a batch of requests is submitted.
+     */
+    public void submit(RenderRequest request) {
+        request.sequence = sequence++;
+        request.submitTime = System.nanoTime();
+        request.updatePriority();
+        queue.add(request);
+    }
+
+    /**
+     * Cancels request. Returns {@code true} if it was still queued, otherwise it is in flight or
+     * already rendered and will be delivered to {@link RenderRequest#onRendered()} marked as cancelled.
+     */
+    public boolean cancel(RenderRequest request) {
+        request.cancel();
+        if(queue.remove(request)) {
+            stats.recordCancelled();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Recomputes priorities of queued requests. Called on the main thread only, reuses its buffer.
+     */
+    public void reprioritize() {
+        queue.drainTo(reprioritized);
+        for (int i = 0; i < reprioritized.size(); i++) {
+            RenderRequest request = reprioritized.get(i);
+            request.updatePriority();
+            queue.add(request);
+        }
+        reprioritized.clear();
+    }
+
+    /**
+     * Returns {@code true} while requests are queued or being rendered, safe to call from any thread.
+     */
+    public boolean isBusy() {
+        return activeWorkers.get() > 0 || !queue.isEmpty();
+    }
+
+    public void shutdown() {
+        stopped = true;
+        queue.clear();
+        for (Thread worker : workers) {
+            worker.interrupt();
+        }
+    }
+}
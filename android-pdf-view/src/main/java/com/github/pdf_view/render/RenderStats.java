@@ -0,0 +1,98 @@
+package com.github.pdf_view.render;
+
+import android.os.Debug;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free counters of the render pipeline, updated from render workers and the main thread.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+public class RenderStats {
+
+    public static final int TIER_THUMBNAIL = 0;
+    public static final int TIER_CONTENT = 1;
+
+    /**
+     * Upper bounds in milliseconds of latency histogram buckets, the last bucket is unbounded.
+     */
+    private static final long[] LATENCY_BOUNDS = {1, 2, 4, 8, 16, 32, 64, 128, 256, 512, 1024};
+
+    private final AtomicLongArray[] latencies = {
+            new AtomicLongArray(LATENCY_BOUNDS.length + 1),
+            new AtomicLongArray(LATENCY_BOUNDS.length + 1)
+    };
+
+    private final AtomicLong rendered = new AtomicLong();
+    private final AtomicLong cancelled = new AtomicLong();
+    private final AtomicLong wasted = new AtomicLong();
+    private final AtomicLong pdfiumCpuTime = new AtomicLong();
+
+    public void recordRendered(int tier, long latencyNanos) {
+        rendered.incrementAndGet();
+        long millis = TimeUnit.NANOSECONDS.toMillis(latencyNanos);
+        int bucket = 0;
+        while (bucket < LATENCY_BOUNDS.length && millis >= LATENCY_BOUNDS[bucket]) {
+            bucket++;
+        }
+        latencies[tier].incrementAndGet(bucket);
+    }
+
+    public void recordCancelled() {
+        cancelled.incrementAndGet();
+    }
+
+    /**
+     * Records request that was rendered but its result was no longer needed.
+     */
+    public void recordWasted() {
+        wasted.incrementAndGet();
+    }
+
+    /**
+     * Returns CPU time of the current thread for a later {@link #recordPdfiumTime(long)}, or -1 when
+     * the platform does not support it.
+     */
+    public static long threadCpuTime() {
+        return Debug.threadCpuTimeNanos();
+    }
+
+    public void recordPdfiumTime(long startCpuTime) {
+        if(startCpuTime >= 0) {
+            pdfiumCpuTime.addAndGet(Debug.threadCpuTimeNanos() - startCpuTime);
+        }
+    }
+
+    public static long[] getLatencyBounds() {
+        return LATENCY_BOUNDS.clone();
+    }
+
+    public long[] getLatencyHistogram(int tier) {
+        AtomicLongArray histogram = latencies[tier];
+        long[] result = new long[histogram.length()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = histogram.get(i);
+        }
+        return result;
+    }
+
+    public long getRenderedCount() {
+        return rendered.get();
+    }
+
+    public long getCancelledCount() {
+        return cancelled.get();
+    }
+
+    public long getWastedCount() {
+        return wasted.get();
+    }
+
+    public long getPdfiumCpuTime() {
+        return pdfiumCpuTime.get();
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.pdf_view.render;
+
+import android.graphics.Bitmap;
+import android.support.v4.graphics.BitmapCompat;
+import android.support.v4.util.LruCache;
+import android.util.Log;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * LRU cache of rendered tiles that sits in front of the free bitmap pool. Tiles evicted from it
+ * are handed to the optional {@link CompressedTileCache} or returned to the {@link BitmapCache}.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 18, 2016
+ */
+public class TileCache {
+
+    private static final String TAG = TileCache.class.getSimpleName();
+    private static final int MAX_UNIFORM_TILES = 1024;
+
+    private final BitmapCache pool;
+
+    private final LruCache<TileKey, Bitmap> tiles;
+
+    private final LruCache<TileKey, Integer> uniformTiles = new LruCache<>(MAX_UNIFORM_TILES);
+
+    private DiskTileCache diskCache;
+
+    private CompressedTileCache compressedCache;
+
+    private volatile boolean clearing;
+
+    private final AtomicLong bytesInUse = new AtomicLong();
+
+    private int hitCount;
+    private int missCount;
+
+    public TileCache(int maxSize, BitmapCache pool) {
+        this.pool = pool;
+        tiles = new LruCache<TileKey, Bitmap>(maxSize) {
+            @Override
+            protected int sizeOf(TileKey key, Bitmap value) {
+                return BitmapCompat.getAllocationByteCount(value) / 1024;
+            }
+
+            @Override
+            protected void entryRemoved(boolean evicted, TileKey key, Bitmap oldValue, Bitmap newValue) {
+                if(evicted && !clearing && compressedCache != null) {
+                    compressedCache.add(key, oldValue, TileCache.this);
+                } else if(evicted || (newValue != null && newValue != oldValue)) {
+                    release(oldValue);
+                }
+            }
+        };
+    }
+
+    public void setDiskCache(DiskTileCache diskCache) {
+        this.diskCache = diskCache;
+    }
+
+    public DiskTileCache getDiskCache() {
+        return diskCache;
+    }
+
+    public void setCompressedCache(CompressedTileCache compressedCache) {
+        this.compressedCache = compressedCache;
+    }
+
+    public CompressedTileCache getCompressedCache() {
+        return compressedCache;
+    }
+
+    /**
+     * Takes rendered tile out of the cache, the caller becomes the owner of the returned bitmap.
+     * Falls back to the compressed tier and then to the disk cache when the tile is not in memory.
+     */
+    public Bitmap get(TileKey key) {
+        Bitmap bmp = tiles.remove(key);
+        if(bmp == null && compressedCache != null) {
+            bmp = compressedCache.get(key, this);
+        }
+        if(bmp == null && diskCache != null) {
+            bmp = diskCache.get(key, this);
+        }
+        synchronized (this) {
+            if(bmp != null) {
+                hitCount++;
+            } else {
+                missCount++;
+            }
+        }
+        return bmp;
+    }
+
+    /**
+     * Returns colour of a solid colour tile that was rendered before, or {@code null}.
+     */
+    public Integer getUniformColor(TileKey key) {
+        return uniformTiles.get(key);
+    }
+
+    public void putUniformColor(TileKey key, int color) {
+        uniformTiles.put(key, color);
+    }
+
+    /**
+     * Stores freshly rendered tile in the disk cache so it survives reopening the document.
+     */
+    public void persist(TileKey key, Bitmap bmp) {
+        if(diskCache != null) {
+            diskCache.put(key, bmp);
+        }
+    }
+
+    public void put(TileKey key, Bitmap bmp) {
+        tiles.put(key, bmp);
+    }
+
+    /**
+     * Returns pooled or newly allocated bitmap. When allocation fails all cached bitmaps are dropped
+     * and allocation is retried once, {@code null} is returned if memory is still exhausted.
+     */
+    public Bitmap obtainBitmap(int width, int height, Bitmap.Config config) {
+        Bitmap bmp = pool.peek(width, height, config);
+        if(bmp == null) {
+            bmp = createBitmap(width, height, config);
+        }
+        if(bmp == null) {
+            Log.w(TAG, "Out of memory allocating " + width + "x" + height + " tile, dropping caches");
+            evictAll();
+            pool.evictAll();
+            bmp = createBitmap(width, height, config);
+        }
+        if(bmp != null) {
+            bytesInUse.addAndGet(BitmapCompat.getAllocationByteCount(bmp));
+        }
+        return bmp;
+    }
+
+    private static Bitmap createBitmap(int width, int height, Bitmap.Config config) {
+        try {
+            return Bitmap.createBitmap(width, height, config);
+        } catch (OutOfMemoryError e) {
+            return null;
+        }
+    }
+
+    /**
+     * Returns bitmap taken by {@link #obtainBitmap(int, int, Bitmap.Config)} to the pool.
+     */
+    public void release(Bitmap bmp) {
+        bytesInUse.addAndGet(-BitmapCompat.getAllocationByteCount(bmp));
+        pool.put(bmp);
+    }
+
+    /**
+     * Bytes of bitmaps taken from {@link #obtainBitmap(int, int, Bitmap.Config)} and not released
+     * yet: tiles on screen, in this cache and waiting for compression.
+     */
+    public long getBytesInUse() {
+        return bytesInUse.get();
+    }
+
+    public synchronized int getHitCount() {
+        return hitCount;
+    }
+
+    public synchronized int getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Drops all cached tiles, including the compressed tier, returning their bitmaps to the pool.
+     */
+    public void evictAll() {
+        clearing = true;
+        tiles.evictAll();
+        clearing = false;
+        uniformTiles.evictAll();
+        if(compressedCache != null) {
+            compressedCache.evictAll();
+        }
+    }
+}
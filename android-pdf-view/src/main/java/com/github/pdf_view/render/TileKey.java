@@ -0,0 +1,56 @@
+package com.github.pdf_view.render;
+
+import android.graphics.Rect;
+
+/**
+ * Identity of a rendered tile: page index, size of the whole page in pixels, scale it was rendered
+ * at and its bounds in that scale. Page size depends on the view width, so tiles rendered before a
+ * resize or rotation never match tiles of the new layout.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 18, 2016
+ */
+public class TileKey {
+
+    private final int index;
+    private final int pageWidth;
+    private final int pageHeight;
+    private final float scale;
+    private final Rect bounds;
+
+    public TileKey(int index, int pageWidth, int pageHeight, float scale, Rect bounds) {
+        this.index = index;
+        this.pageWidth = pageWidth;
+        this.pageHeight = pageHeight;
+        this.scale = scale;
+        this.bounds = bounds;
+    }
+
+    public String getName() {
+        return index + "_" + pageWidth + "x" + pageHeight + "_"
+                + Integer.toHexString(Float.floatToIntBits(scale)) + "_"
+                + bounds.left + "_" + bounds.top + "_" + bounds.right + "_" + bounds.bottom;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        TileKey tileKey = (TileKey) o;
+        return index == tileKey.index &&
+                pageWidth == tileKey.pageWidth &&
+                pageHeight == tileKey.pageHeight &&
+                Float.compare(tileKey.scale, scale) == 0 &&
+                bounds.equals(tileKey.bounds);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = index;
+        result = 31 * result + pageWidth;
+        result = 31 * result + pageHeight;
+        result = 31 * result + Float.floatToIntBits(scale);
+        result = 31 * result + bounds.hashCode();
+        return result;
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.pdf_view.render;
+
+import android.graphics.Bitmap;
+
+/**
+ * Detects tiles filled with a single colour, such as page margins and blank regions. Safe to use from
+ * several render workers at once, each thread scans with its own row buffer.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 19, 2016
+ */
+public class UniformTileDetector {
+
+    private final ThreadLocal<int[]> rows = new ThreadLocal<>();
+
+    public boolean isUniform(Bitmap bmp) {
+        int width = bmp.getWidth();
+        int height = bmp.getHeight();
+        int[] row = rows.get();
+        if(row == null || row.length < width) {
+            row = new int[width];
+            rows.set(row);
+        }
+        int color = bmp.getPixel(0, 0);
+        for (int y = 0; y < height; y++) {
+            bmp.getPixels(row, 0, width, 0, y, width, 1);
+            for (int x = 0; x < width; x++) {
+                if(row[x] != color) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,153 @@
+package com.github.pdf_view.utils;
+
+import java.util.Arrays;
+
+/**
+ * Minimal pure Java compressor producing LZ4 block format. Favours speed over ratio, which suits
+ * rendered pages made of long runs of background colour. Instances are not thread safe.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 19, 2016
+ */
+public class Lz4Codec {
+
+    private static final int MIN_MATCH = 4;
+    private static final int LAST_LITERALS = 5;
+    private static final int MATCH_FIND_LIMIT = 12;
+    private static final int MAX_DISTANCE = 0xFFFF;
+    private static final int HASH_LOG = 14;
+    private static final int SKIP_TRIGGER = 6;
+    private static final int RUN_MASK = 0xF;
+
+    private final int[] hashTable = new int[1 << HASH_LOG];
+
+    public static int maxCompressedLength(int length) {
+        return length + length / 255 + 16;
+    }
+
+    /**
+     * Compresses {@code length} bytes of {@code src} into {@code dst}, which must hold at least
+     * {@link #maxCompressedLength(int)} bytes. Returns compressed length.
+     */
+    public int compress(byte[] src, int length, byte[] dst) {
+        int anchor = 0;
+        int dstOffset = 0;
+        if(length >= MATCH_FIND_LIMIT) {
+            Arrays.fill(hashTable, -1);
+            int matchLimit = length - LAST_LITERALS;
+            int position = 0;
+            while (position < length - MATCH_FIND_LIMIT) {
+                int sequence = readInt(src, position);
+                int hash = hash(sequence);
+                int reference = hashTable[hash];
+                hashTable[hash] = position;
+                if(reference < 0 || position - reference > MAX_DISTANCE || readInt(src, reference) != sequence) {
+                    position += 1 + ((position - anchor) >>> SKIP_TRIGGER);
+                    continue;
+                }
+                while (position > anchor && reference > 0 && src[position - 1] == src[reference - 1]) {
+                    position--;
+                    reference--;
+                }
+                int matchLength = MIN_MATCH;
+                while (position + matchLength < matchLimit
+                        && src[position + matchLength] == src[reference + matchLength]) {
+                    matchLength++;
+                }
+                dstOffset = writeSequence(src, anchor, position - anchor, position - reference,
+                        matchLength, dst, dstOffset);
+                position += matchLength;
+                anchor = position;
+            }
+        }
+        return writeLastLiterals(src, anchor, length - anchor, dst, dstOffset);
+    }
+
+    /**
+     * Decompresses {@code length} bytes of {@code src} into {@code dst}. Returns decompressed length.
+     */
+    public static int decompress(byte[] src, int length, byte[] dst) {
+        int srcOffset = 0;
+        int dstOffset = 0;
+        while (srcOffset < length) {
+            int token = src[srcOffset++] & 0xFF;
+            int literalLength = token >>> 4;
+            if(literalLength == RUN_MASK) {
+                int b;
+                do {
+                    b = src[srcOffset++] & 0xFF;
+                    literalLength += b;
+                } while (b == 0xFF);
+            }
+            System.arraycopy(src, srcOffset, dst, dstOffset, literalLength);
+            srcOffset += literalLength;
+            dstOffset += literalLength;
+            if(srcOffset >= length) {
+                break;
+            }
+            int distance = (src[srcOffset++] & 0xFF) | ((src[srcOffset++] & 0xFF) << 8);
+            int matchLength = token & RUN_MASK;
+            if(matchLength == RUN_MASK) {
+                int b;
+                do {
+                    b = src[srcOffset++] & 0xFF;
+                    matchLength += b;
+                } while (b == 0xFF);
+            }
+            matchLength += MIN_MATCH;
+            int reference = dstOffset - distance;
+            while (matchLength > 0) {
+                int chunk = Math.min(dstOffset - reference, matchLength);
+                System.arraycopy(dst, reference, dst, dstOffset, chunk);
+                dstOffset += chunk;
+                matchLength -= chunk;
+            }
+        }
+        return dstOffset;
+    }
+
+    private static int writeSequence(byte[] src, int literalOffset, int literalLength, int distance,
+                                     int matchLength, byte[] dst, int dstOffset) {
+        int tokenOffset = dstOffset++;
+        int extraMatch = matchLength - MIN_MATCH;
+        int token = (Math.min(literalLength, RUN_MASK) << 4) | Math.min(extraMatch, RUN_MASK);
+        dst[tokenOffset] = (byte) token;
+        dstOffset = writeLength(literalLength, dst, dstOffset);
+        System.arraycopy(src, literalOffset, dst, dstOffset, literalLength);
+        dstOffset += literalLength;
+        dst[dstOffset++] = (byte) distance;
+        dst[dstOffset++] = (byte) (distance >>> 8);
+        return writeLength(extraMatch, dst, dstOffset);
+    }
+
+    private static int writeLastLiterals(byte[] src, int literalOffset, int literalLength, byte[] dst, int dstOffset) {
+        dst[dstOffset++] = (byte) (Math.min(literalLength, RUN_MASK) << 4);
+        dstOffset = writeLength(literalLength, dst, dstOffset);
+        System.arraycopy(src, literalOffset, dst, dstOffset, literalLength);
+        return dstOffset + literalLength;
+    }
+
+    private static int writeLength(int length, byte[] dst, int dstOffset) {
+        if(length < RUN_MASK) {
+            return dstOffset;
+        }
+        length -= RUN_MASK;
+        while (length >= 0xFF) {
+            dst[dstOffset++] = (byte) 0xFF;
+            length -= 0xFF;
+        }
+        dst[dstOffset++] = (byte) length;
+        return dstOffset;
+    }
+
+    private static int readInt(byte[] src, int offset) {
+        return (src[offset] & 0xFF)
+                | ((src[offset + 1] & 0xFF) << 8)
+                | ((src[offset + 2] & 0xFF) << 16)
+                | ((src[offset + 3] & 0xFF) << 24);
+    }
+
+    private static int hash(int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+}
@@ -0,0 +1,32 @@
+package com.github.pdf_view.utils;
+
+import android.support.v4.os.TraceCompat;
+
+/**
+ * Systrace sections of the rendering pipeline. Sections are no-ops unless a trace is being captured
+ * on Jelly Bean MR2 or newer. Verbose dumps must be guarded by {@link #VERBOSE}, which is a compile
+ * time constant so the guarded code and its string building are stripped from release builds.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+public final class RenderTrace {
+
+    public static final boolean VERBOSE = false;
+
+    public static final String LAYOUT = "PdfView:layout";
+    public static final String RENDER = "PdfView:render";
+    public static final String RECYCLE = "PdfView:recycle";
+    public static final String DRAW = "PdfView:draw";
+
+    private RenderTrace() {
+    }
+
+    public static void begin(String section) {
+        TraceCompat.beginSection(section);
+    }
+
+    public static void end() {
+        TraceCompat.endSection();
+    }
+}
@@ -0,0 +1,191 @@
+package com.github.pdf_view.render;
+
+import android.graphics.Bitmap;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Throughput of {@link BitmapCache} with several threads taking and returning bitmaps at once,
+ * compared with a pool guarded by one monitor like the cache was before striping. Results are
+ * printed to stdout. Skipped unless the {@code pdfview.benchmark} system property is set, run
+ * with {@code ./gradlew test -Pbenchmark}.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 18)
+public class BitmapCacheContentionBenchmark {
+
+    private static final int[] THREAD_COUNTS = {1, 2, 4, 8};
+    private static final int[] SIDES = {64, 128, 256};
+    private static final int BITMAPS_PER_SIDE = 64;
+    private static final int OPERATIONS_PER_THREAD = 200000;
+    private static final int BUDGET_KB = 64 * 1024;
+
+    @Before
+    public void setUp() {
+        assumeTrue(Boolean.getBoolean("pdfview.benchmark"));
+    }
+
+    @Test
+    public void contention() throws InterruptedException {
+        // warm up the JIT
+        run(new StripedPool(), 4);
+        run(new SynchronizedPool(), 4);
+        for (int threads : THREAD_COUNTS) {
+            double striped = run(new StripedPool(), threads);
+            double synchronizedPool = run(new SynchronizedPool(), threads);
+            System.out.println(String.format(Locale.US,
+                    "%d threads: striped %.0f ops/ms, single lock %.0f ops/ms, %.2fx",
+                    threads, striped, synchronizedPool, striped / synchronizedPool));
+        }
+    }
+
+    /**
+     * Returns peek and put operations per millisecond.
+     */
+    private double run(final Pool pool, int threadCount) throws InterruptedException {
+        for (int side : SIDES) {
+            for (int i = 0; i < BITMAPS_PER_SIDE; i++) {
+                pool.put(Bitmap.createBitmap(side, side, Bitmap.Config.ARGB_8888));
+            }
+        }
+        final CountDownLatch start = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(threadCount);
+        final AtomicLong misses = new AtomicLong();
+        for (int t = 0; t < threadCount; t++) {
+            final int offset = t;
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    int missed = 0;
+                    for (int i = 0; i < OPERATIONS_PER_THREAD; i++) {
+                        int side = SIDES[(i + offset) % SIDES.length];
+                        Bitmap bmp = pool.peek(side, side, Bitmap.Config.ARGB_8888);
+                        if(bmp == null) {
+                            missed++;
+                        } else {
+                            pool.put(bmp);
+                        }
+                    }
+                    misses.addAndGet(missed);
+                    done.countDown();
+                }
+            }).start();
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        done.await();
+        long elapsed = System.nanoTime() - startTime;
+        // every thread holds at most one bitmap at a time, so the pool never runs dry
+        assertEquals(0, misses.get());
+        return threadCount * OPERATIONS_PER_THREAD * 2 / (elapsed / 1e6);
+    }
+
+    private interface Pool {
+        Bitmap peek(int width, int height, Bitmap.Config config);
+
+        void put(Bitmap bmp);
+    }
+
+    private static class StripedPool implements Pool {
+
+        private final BitmapCache cache = new BitmapCache(BUDGET_KB);
+
+        @Override
+        public Bitmap peek(int width, int height, Bitmap.Config config) {
+            return cache.peek(width, height, config);
+        }
+
+        @Override
+        public void put(Bitmap bmp) {
+            cache.put(bmp);
+        }
+    }
+
+    /**
+     * Pool behind one monitor with size class lists and a global eviction order, the baseline the
+     * striped cache replaced. Only exact sizes are reused, like on API 18.
+     */
+    private static class SynchronizedPool implements Pool {
+
+        private static final int SIZE_CLASSES = 32;
+
+        private final EnumMap<Bitmap.Config, LinkedList<Bitmap>[]> pools = new EnumMap<>(Bitmap.Config.class);
+        private final LinkedHashMap<Bitmap, Integer> evictionOrder = new LinkedHashMap<>();
+        private final long maxSize = BUDGET_KB * 1024L;
+        private long currentSize;
+
+        @Override
+        public synchronized Bitmap peek(int width, int height, Bitmap.Config config) {
+            int sizeClass = sizeClassOf(width * height * BitmapCache.bytesPerPixel(config));
+            Iterator<Bitmap> iterator = sizeClasses(config)[sizeClass].iterator();
+            while (iterator.hasNext()) {
+                Bitmap candidate = iterator.next();
+                if(candidate.getWidth() == width && candidate.getHeight() == height) {
+                    iterator.remove();
+                    evictionOrder.remove(candidate);
+                    currentSize -= candidate.getByteCount();
+                    return candidate;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        public synchronized void put(Bitmap bmp) {
+            int sizeClass = sizeClassOf(bmp.getByteCount());
+            sizeClasses(bmp.getConfig())[sizeClass].addFirst(bmp);
+            evictionOrder.put(bmp, sizeClass);
+            currentSize += bmp.getByteCount();
+            Iterator<Map.Entry<Bitmap, Integer>> iterator = evictionOrder.entrySet().iterator();
+            while (currentSize >= maxSize && iterator.hasNext()) {
+                Map.Entry<Bitmap, Integer> toEvict = iterator.next();
+                iterator.remove();
+                Bitmap evicted = toEvict.getKey();
+                sizeClasses(evicted.getConfig())[toEvict.getValue()].removeLastOccurrence(evicted);
+                currentSize -= evicted.getByteCount();
+                evicted.recycle();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private LinkedList<Bitmap>[] sizeClasses(Bitmap.Config config) {
+            LinkedList<Bitmap>[] sizeClasses = pools.get(config);
+            if(sizeClasses == null) {
+                sizeClasses = new LinkedList[SIZE_CLASSES];
+                for (int i = 0; i < SIZE_CLASSES; i++) {
+                    sizeClasses[i] = new LinkedList<>();
+                }
+                pools.put(config, sizeClasses);
+            }
+            return sizeClasses;
+        }
+
+        private static int sizeClassOf(int allocation) {
+            return 31 - Integer.numberOfLeadingZeros(Math.max(allocation, 1));
+        }
+    }
+}
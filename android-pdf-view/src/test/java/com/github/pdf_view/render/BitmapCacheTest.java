@@ -0,0 +1,165 @@
+package com.github.pdf_view.render;
+
+import android.graphics.Bitmap;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Byte accounting of {@link BitmapCache}. Runs on Jelly Bean MR2, where only bitmaps of the exact
+ * size are reused and allocation size equals {@link Bitmap#getByteCount()}.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 18)
+public class BitmapCacheTest {
+
+    private static final int BUDGET_KB = 1024;
+    private static final long BUDGET = BUDGET_KB * 1024L;
+    private static final int[] SIDES = {16, 32, 64, 100, 128, 256};
+    private static final Bitmap.Config[] CONFIGS = {Bitmap.Config.ARGB_8888, Bitmap.Config.RGB_565,
+            Bitmap.Config.ALPHA_8};
+
+    @Test
+    public void putAndPeekUpdateSize() {
+        BitmapCache cache = new BitmapCache(BUDGET_KB);
+        Bitmap first = Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888);
+        Bitmap second = Bitmap.createBitmap(64, 32, Bitmap.Config.ALPHA_8);
+        cache.put(first);
+        cache.put(second);
+        assertEquals(100 * 100 * 4 + 64 * 32, cache.getSize());
+
+        assertSame(first, cache.peek(100, 100, Bitmap.Config.ARGB_8888));
+        assertEquals(64 * 32, cache.getSize());
+        assertSame(second, cache.peek(64, 32, Bitmap.Config.ALPHA_8));
+        assertEquals(0, cache.getSize());
+        assertEquals(2, cache.getHitCount());
+    }
+
+    @Test
+    public void missKeepsSize() {
+        BitmapCache cache = new BitmapCache(BUDGET_KB);
+        cache.put(Bitmap.createBitmap(100, 100, Bitmap.Config.ARGB_8888));
+
+        assertNull(cache.peek(100, 100, Bitmap.Config.RGB_565));
+        assertNull(cache.peek(50, 50, Bitmap.Config.ARGB_8888));
+        assertEquals(100 * 100 * 4, cache.getSize());
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void putOverBudgetEvictsAndRecycles() {
+        BitmapCache cache = new BitmapCache(BUDGET_KB);
+        List<Bitmap> pooled = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            Bitmap bmp = Bitmap.createBitmap(256, 256, Bitmap.Config.ARGB_8888);
+            pooled.add(bmp);
+            cache.put(bmp);
+            assertTrue("Pool is over budget", cache.getSize() < BUDGET);
+        }
+        int recycled = 0;
+        for (Bitmap bmp : pooled) {
+            if(bmp.isRecycled()) {
+                recycled++;
+            }
+        }
+        assertEquals(pooled.size() * 256 * 256 * 4L - recycled * 256 * 256 * 4L, cache.getSize());
+        assertTrue(pooled.get(0).isRecycled());
+        assertFalse(pooled.get(pooled.size() - 1).isRecycled());
+    }
+
+    @Test
+    public void evictAllEmptiesPool() {
+        BitmapCache cache = new BitmapCache(BUDGET_KB);
+        List<Bitmap> pooled = new ArrayList<>();
+        for (int side : SIDES) {
+            Bitmap bmp = Bitmap.createBitmap(side, side, Bitmap.Config.RGB_565);
+            pooled.add(bmp);
+            cache.put(bmp);
+        }
+        cache.evictAll();
+        assertEquals(0, cache.getSize());
+        for (Bitmap bmp : pooled) {
+            assertTrue(bmp.isRecycled());
+        }
+        assertNull(cache.peek(SIDES[0], SIDES[0], Bitmap.Config.RGB_565));
+    }
+
+    @Test
+    public void stressKeepsSizeWithinBudget() {
+        BitmapCache cache = new BitmapCache(BUDGET_KB);
+        Random random = new Random(42);
+        List<Bitmap> taken = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            int side = SIDES[random.nextInt(SIDES.length)];
+            Bitmap.Config config = CONFIGS[random.nextInt(CONFIGS.length)];
+            if(random.nextInt(3) == 0) {
+                Bitmap bmp = cache.peek(side, side, config);
+                if(bmp != null) {
+                    assertFalse("Pooled bitmap was handed out recycled", bmp.isRecycled());
+                    taken.add(bmp);
+                }
+            } else if(!taken.isEmpty() && random.nextBoolean()) {
+                cache.put(taken.remove(taken.size() - 1));
+            } else {
+                cache.put(Bitmap.createBitmap(side, side, config));
+            }
+            assertTrue("Pool is over budget", cache.getSize() < BUDGET);
+            assertTrue("Pool size went negative", cache.getSize() >= 0);
+        }
+        cache.evictAll();
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void concurrentStressKeepsAccounting() throws InterruptedException {
+        final BitmapCache cache = new BitmapCache(BUDGET_KB);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long seed = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        Random random = new Random(seed);
+                        for (int i = 0; i < 2000; i++) {
+                            int side = SIDES[random.nextInt(SIDES.length)];
+                            Bitmap.Config config = CONFIGS[random.nextInt(CONFIGS.length)];
+                            Bitmap bmp = cache.peek(side, side, config);
+                            if(bmp != null && bmp.isRecycled()) {
+                                throw new AssertionError("Pooled bitmap was handed out recycled");
+                            }
+                            cache.put(bmp != null ? bmp : Bitmap.createBitmap(side, side, config));
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertNull(failure.get());
+        assertTrue("Pool is over budget", cache.getSize() < BUDGET);
+        cache.evictAll();
+        assertEquals(0, cache.getSize());
+    }
+}
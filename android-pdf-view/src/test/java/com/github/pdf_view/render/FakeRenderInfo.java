@@ -0,0 +1,100 @@
+package com.github.pdf_view.render;
+
+import android.graphics.Point;
+
+/**
+ * {@link RenderInfo} of a fixed 1080x1920 viewport for tests of the layout and draw path. Every
+ * page has the same original size, the vertical scroll position can be moved by the test.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+class FakeRenderInfo implements RenderInfo {
+
+    static final int RENDER_WIDTH = 1080;
+    static final int RENDER_HEIGHT = 1920;
+
+    final float scale;
+    final float normalizeScale;
+    final int pageSpacing;
+    final int partWidth;
+    final int partHeight;
+    final int pageWidth;
+    final int pageHeight;
+    int scrollY;
+
+    FakeRenderInfo(float scale, float normalizeScale, int pageSpacing, int partWidth, int partHeight,
+                   int pageWidth, int pageHeight) {
+        this.scale = scale;
+        this.normalizeScale = normalizeScale;
+        this.pageSpacing = pageSpacing;
+        this.partWidth = partWidth;
+        this.partHeight = partHeight;
+        this.pageWidth = pageWidth;
+        this.pageHeight = pageHeight;
+    }
+
+    @Override
+    public int getScrollX() {
+        return 0;
+    }
+
+    @Override
+    public int getScrollY() {
+        return scrollY;
+    }
+
+    @Override
+    public float getScale() {
+        return scale;
+    }
+
+    @Override
+    public float getNormalizeScale() {
+        return normalizeScale;
+    }
+
+    @Override
+    public int getPageSpacing() {
+        return pageSpacing;
+    }
+
+    @Override
+    public int getRenderOffsetLeft() {
+        return 0;
+    }
+
+    @Override
+    public int getRenderOffsetTop() {
+        return 0;
+    }
+
+    @Override
+    public int getPartWidth() {
+        return partWidth;
+    }
+
+    @Override
+    public int getPartHeight() {
+        return partHeight;
+    }
+
+    @Override
+    public int getRenderWidth() {
+        return RENDER_WIDTH;
+    }
+
+    @Override
+    public int getRenderHeight() {
+        return RENDER_HEIGHT;
+    }
+
+    @Override
+    public Point getPageSize(int index) {
+        // fields are set one by one, constructors of the stub android.jar do nothing
+        Point size = new Point();
+        size.x = pageWidth;
+        size.y = pageHeight;
+        return size;
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.pdf_view.render;
+
+import android.graphics.Canvas;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Scrolls a document through the per-frame draw path, page lookup by offset and
+ * {@link Page#draw(Canvas)} of every visible page, and checks that no frame allocates. Android
+ * classes come from the stub jar, so only allocations of the library itself are counted.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+public class PageDrawAllocationTest {
+
+    private static final int PAGE_COUNT = 40;
+    private static final int PAGE_WIDTH = 612;
+    private static final int PAGE_HEIGHT = 792;
+    private static final int SCROLL_STEP = 37;
+
+    private final FakeRenderInfo renderInfo = new FakeRenderInfo(1,
+            (float) FakeRenderInfo.RENDER_WIDTH / PAGE_WIDTH, 16, 270, 480, PAGE_WIDTH, PAGE_HEIGHT);
+    private final List<Page> pages = new ArrayList<>();
+    private final Canvas canvas = new Canvas();
+    private PageLayout layout;
+
+    @Before
+    public void setUp() {
+        layout = new PageLayout(renderInfo, PAGE_COUNT, PAGE_HEIGHT);
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            Page page = new Page(i, renderInfo, layout);
+            page.preparePage(renderInfo.getPageSize(i));
+            pages.add(page);
+        }
+        for (Page page : pages) {
+            renderInfo.scrollY = page.getTop();
+            page.prepareActualParts();
+            page.getThumbnail();
+            if(page.getIndex() % 2 == 0) {
+                page.preparePreview(0.5f);
+            }
+        }
+        renderInfo.scrollY = 0;
+    }
+
+    @Test
+    public void scrollDoesNotAllocate() {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+        long threadId = Thread.currentThread().getId();
+
+        // warm up class loading and the JIT
+        int frames = scroll();
+        threads.getThreadAllocatedBytes(threadId);
+        long before = threads.getThreadAllocatedBytes(threadId);
+        scroll();
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertEquals("Bytes allocated over " + frames + " frames", 0, allocated);
+    }
+
+    /**
+     * Scrolls to the end of the document and back, returns number of drawn frames.
+     */
+    private int scroll() {
+        int maxScrollY = pages.get(PAGE_COUNT - 1).getBottom() - renderInfo.getRenderHeight();
+        int frames = 0;
+        for (int scrollY = 0; scrollY < maxScrollY; scrollY += SCROLL_STEP) {
+            drawFrame(scrollY);
+            frames++;
+        }
+        for (int scrollY = maxScrollY; scrollY > 0; scrollY -= SCROLL_STEP) {
+            drawFrame(scrollY);
+            frames++;
+        }
+        return frames;
+    }
+
+    private void drawFrame(int scrollY) {
+        renderInfo.scrollY = scrollY;
+        int first = layout.getPageAt(scrollY);
+        int last = layout.getPageAt(scrollY + renderInfo.getRenderHeight());
+        for (int i = first; i <= last; i++) {
+            pages.get(i).draw(canvas);
+        }
+    }
+}
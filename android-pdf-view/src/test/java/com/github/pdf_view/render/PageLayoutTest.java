@@ -0,0 +1,125 @@
+package com.github.pdf_view.render;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks the Fenwick tree of {@link PageLayout} against plain prefix sums.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+public class PageLayoutTest {
+
+    @Test
+    public void defaultHeights() {
+        FakeRenderInfo info = renderInfo(1, 1, 0);
+        PageLayout layout = new PageLayout(info, 5, 100);
+        for (int i = 0; i < 5; i++) {
+            assertEquals(100, layout.getOriginalHeight(i));
+            assertEquals(i * 100L, layout.getOriginalTop(i));
+        }
+        assertEquals(0, layout.getPageAt(-50));
+        assertEquals(0, layout.getPageAt(99));
+        assertEquals(1, layout.getPageAt(100));
+        assertEquals(4, layout.getPageAt(10000));
+    }
+
+    @Test
+    public void versionChangesOnlyWithHeight() {
+        PageLayout layout = new PageLayout(renderInfo(1, 1, 0), 3, 100);
+        int version = layout.getVersion();
+        layout.setOriginalHeight(1, 100);
+        assertEquals(version, layout.getVersion());
+        layout.setOriginalHeight(1, 150);
+        assertTrue(layout.getVersion() != version);
+    }
+
+    @Test
+    public void singleAndEmptyDocument() {
+        FakeRenderInfo info = renderInfo(1, 1, 10);
+        PageLayout single = new PageLayout(info, 1, 100);
+        assertEquals(0, single.getPageAt(0));
+        assertEquals(0, single.getPageAt(500));
+        assertEquals(0, new PageLayout(info, 0, 100).getPageCount());
+    }
+
+    @Test
+    public void matchesPrefixSums() {
+        Random random = new Random(17);
+        float[][] scales = {{1, 1}, {2.5f, 0.75f}, {0.4f, 1.3f}};
+        for (float[] scale : scales) {
+            int pageCount = 1 + random.nextInt(300);
+            FakeRenderInfo info = renderInfo(scale[0], scale[1], random.nextInt(30));
+            PageLayout layout = new PageLayout(info, pageCount, 1000);
+            int[] heights = new int[pageCount];
+            Arrays.fill(heights, 1000);
+            for (int update = 0; update < 2000; update++) {
+                int index = random.nextInt(pageCount);
+                heights[index] = 200 + random.nextInt(3000);
+                layout.setOriginalHeight(index, heights[index]);
+                if(update % 50 == 0) {
+                    assertLayout(layout, info, heights, random);
+                }
+            }
+            assertLayout(layout, info, heights, random);
+        }
+    }
+
+    @Test
+    public void largeDocument() {
+        int pageCount = 20000;
+        FakeRenderInfo info = renderInfo(1.7f, 0.9f, 12);
+        PageLayout layout = new PageLayout(info, pageCount, 842);
+        int[] heights = new int[pageCount];
+        Arrays.fill(heights, 842);
+        for (int i = 0; i < pageCount; i += 7) {
+            heights[i] = 595;
+            layout.setOriginalHeight(i, heights[i]);
+        }
+        assertLayout(layout, info, heights, new Random(23));
+    }
+
+    private static FakeRenderInfo renderInfo(float scale, float normalizeScale, int pageSpacing) {
+        return new FakeRenderInfo(scale, normalizeScale, pageSpacing, 256, 256, 612, 792);
+    }
+
+    private static void assertLayout(PageLayout layout, FakeRenderInfo info, int[] heights, Random random) {
+        long[] originalTops = new long[heights.length];
+        int[] tops = new int[heights.length];
+        for (int i = 1; i < heights.length; i++) {
+            originalTops[i] = originalTops[i - 1] + heights[i - 1];
+        }
+        for (int i = 0; i < heights.length; i++) {
+            assertEquals(heights[i], layout.getOriginalHeight(i));
+            assertEquals("Original top of page " + i, originalTops[i], layout.getOriginalTop(i));
+            tops[i] = layout.toTop(originalTops[i], i);
+            assertEquals((int) ((originalTops[i] * info.normalizeScale + info.pageSpacing * i) * info.scale), tops[i]);
+        }
+        int bottom = tops[tops.length - 1] + 4000;
+        for (int probe = 0; probe < 500; probe++) {
+            int offset = random.nextInt(bottom + 200) - 100;
+            assertEquals("Page at " + offset, pageAt(tops, offset), layout.getPageAt(offset));
+        }
+        for (int i = 0; i < tops.length; i++) {
+            // exact page boundaries
+            assertEquals(pageAt(tops, tops[i]), layout.getPageAt(tops[i]));
+            assertEquals(pageAt(tops, tops[i] - 1), layout.getPageAt(tops[i] - 1));
+        }
+    }
+
+    private static int pageAt(int[] tops, int offset) {
+        int result = 0;
+        for (int i = 1; i < tops.length; i++) {
+            if(tops[i] <= offset) {
+                result = i;
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,153 @@
+package com.github.pdf_view.utils;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+public class LongHashMapTest {
+
+    @Test
+    public void putGetRemove() {
+        LongHashMap<String> map = new LongHashMap<>();
+        assertNull(map.put(0, "zero"));
+        assertNull(map.put(-1, "minus one"));
+        assertNull(map.put(Long.MAX_VALUE, "max"));
+        assertEquals(3, map.size());
+        assertEquals("zero", map.get(0));
+        assertEquals("minus one", map.get(-1));
+        assertEquals("max", map.get(Long.MAX_VALUE));
+        assertNull(map.get(1));
+
+        assertEquals("zero", map.put(0, "nil"));
+        assertEquals(3, map.size());
+        assertEquals("nil", map.get(0));
+
+        assertEquals("minus one", map.remove(-1));
+        assertNull(map.remove(-1));
+        assertFalse(map.containsKey(-1));
+        assertEquals(2, map.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void nullValueIsRejected() {
+        new LongHashMap<String>().put(1, null);
+    }
+
+    @Test
+    public void tombstonesKeepProbeChains() {
+        LongHashMap<Long> map = new LongHashMap<>(4);
+        for (long key = 0; key < 6; key++) {
+            map.put(key, key);
+        }
+        // removing keys in the middle of probe chains must not hide the keys after them
+        map.remove(1);
+        map.remove(3);
+        for (long key = 0; key < 6; key++) {
+            assertEquals(key == 1 || key == 3 ? null : Long.valueOf(key), map.get(key));
+        }
+        map.put(3, 33L);
+        assertEquals(Long.valueOf(33), map.get(3));
+        assertEquals(5, map.size());
+    }
+
+    @Test
+    public void repeatedPutRemoveDoesNotGrow() {
+        LongHashMap<Long> map = new LongHashMap<>(16);
+        int capacity = map.capacity();
+        for (long key = 0; key < 100000; key++) {
+            map.put(key, key);
+            map.remove(key);
+        }
+        assertTrue(map.isEmpty());
+        assertEquals(capacity, map.capacity());
+    }
+
+    @Test
+    public void resizeKeepsEntries() {
+        LongHashMap<Long> map = new LongHashMap<>(4);
+        for (long key = 0; key < 10000; key++) {
+            map.put(key * 31, key);
+        }
+        assertEquals(10000, map.size());
+        for (long key = 0; key < 10000; key++) {
+            assertEquals(Long.valueOf(key), map.get(key * 31));
+        }
+    }
+
+    @Test
+    public void removeWhileIteratingSlots() {
+        LongHashMap<Long> map = new LongHashMap<>();
+        for (long key = 0; key < 100; key++) {
+            map.put(key, key);
+        }
+        for (int i = 0; i < map.capacity(); i++) {
+            Long value = map.valueAt(i);
+            if(value != null && value % 2 == 0) {
+                map.remove(map.keyAt(i));
+            }
+        }
+        assertEquals(50, map.size());
+        int visited = 0;
+        for (int i = 0; i < map.capacity(); i++) {
+            Long value = map.valueAt(i);
+            if(value != null) {
+                assertEquals(1, value % 2);
+                assertEquals(value.longValue(), map.keyAt(i));
+                visited++;
+            }
+        }
+        assertEquals(50, visited);
+    }
+
+    @Test
+    public void clearRemovesEverything() {
+        LongHashMap<Long> map = new LongHashMap<>();
+        for (long key = 0; key < 100; key++) {
+            map.put(key, key);
+        }
+        map.clear();
+        assertTrue(map.isEmpty());
+        for (long key = 0; key < 100; key++) {
+            assertNull(map.get(key));
+        }
+        map.put(5, 5L);
+        assertEquals(Long.valueOf(5), map.get(5));
+    }
+
+    @Test
+    public void matchesHashMap() {
+        Random random = new Random(5);
+        LongHashMap<Integer> map = new LongHashMap<>(8);
+        Map<Long, Integer> reference = new HashMap<>();
+        for (int i = 0; i < 200000; i++) {
+            // narrow key range, so keys are removed and put back many times
+            long key = random.nextInt(512) - 256;
+            switch (random.nextInt(3)) {
+                case 0:
+                    assertEquals(reference.put(key, i), map.put(key, i));
+                    break;
+                case 1:
+                    assertEquals(reference.remove(key), map.remove(key));
+                    break;
+                default:
+                    assertEquals(reference.get(key), map.get(key));
+                    assertEquals(reference.containsKey(key), map.containsKey(key));
+            }
+            assertEquals(reference.size(), map.size());
+        }
+        for (Map.Entry<Long, Integer> entry : reference.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+    }
+}
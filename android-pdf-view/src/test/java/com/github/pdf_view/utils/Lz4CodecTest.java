@@ -0,0 +1,91 @@
+package com.github.pdf_view.utils;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+public class Lz4CodecTest {
+
+    private final Lz4Codec codec = new Lz4Codec();
+
+    @Test
+    public void roundTripEmptyAndShortInput() {
+        for (int length = 0; length < 32; length++) {
+            byte[] data = new byte[length];
+            new Random(length).nextBytes(data);
+            roundTrip(data);
+        }
+    }
+
+    @Test
+    public void roundTripRandomData() {
+        Random random = new Random(7);
+        for (int i = 0; i < 20; i++) {
+            byte[] data = new byte[1 + random.nextInt(200000)];
+            random.nextBytes(data);
+            int compressed = roundTrip(data);
+            assertTrue(compressed <= Lz4Codec.maxCompressedLength(data.length));
+        }
+    }
+
+    @Test
+    public void roundTripCompressibleData() {
+        Random random = new Random(11);
+        for (int i = 0; i < 20; i++) {
+            byte[] data = new byte[1 + random.nextInt(200000)];
+            int position = 0;
+            while (position < data.length) {
+                // alternating runs of background and short random strokes
+                int run = Math.min(1 + random.nextInt(random.nextBoolean() ? 2000 : 20), data.length - position);
+                byte value = (byte) random.nextInt(4);
+                if(random.nextInt(4) == 0) {
+                    for (int j = 0; j < run; j++) {
+                        data[position + j] = (byte) random.nextInt();
+                    }
+                } else {
+                    Arrays.fill(data, position, position + run, value);
+                }
+                position += run;
+            }
+            roundTrip(data);
+        }
+    }
+
+    @Test
+    public void blankTileCompressesWell() {
+        // 256x256 ARGB_8888 tile of white pixels
+        byte[] data = new byte[256 * 256 * 4];
+        Arrays.fill(data, (byte) 0xFF);
+        int compressed = roundTrip(data);
+        assertTrue("Compressed to " + compressed + " bytes", compressed < data.length / 100);
+    }
+
+    @Test
+    public void codecIsReusable() {
+        byte[] first = new byte[50000];
+        byte[] second = new byte[50000];
+        Arrays.fill(first, (byte) 1);
+        new Random(3).nextBytes(second);
+        roundTrip(first);
+        roundTrip(second);
+        roundTrip(first);
+    }
+
+    private int roundTrip(byte[] data) {
+        byte[] compressed = new byte[Lz4Codec.maxCompressedLength(data.length)];
+        int compressedLength = codec.compress(data, data.length, compressed);
+        byte[] restored = new byte[data.length];
+        assertEquals(data.length, Lz4Codec.decompress(compressed, compressedLength, restored));
+        assertArrayEquals(data, restored);
+        return compressedLength;
+    }
+}
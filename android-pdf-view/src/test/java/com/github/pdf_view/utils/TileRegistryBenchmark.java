@@ -0,0 +1,129 @@
+package com.github.pdf_view.utils;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Per-frame diffing of rendered and desired tiles the way the render manager does it, with a
+ * {@link LongHashMap} registry against the {@code ArrayList} with {@code contains} and
+ * {@code remove} it replaced. The viewport scrolls one tile row per frame at high zoom, so a few
+ * hundred tiles are visible. Results are printed to stdout. Skipped unless the
+ * {@code pdfview.benchmark} system property is set, run with {@code ./gradlew test -Pbenchmark}.
+ *
+ * @author <a href="mailto:okaminskyi@intropro.com">Oleh Kaminskyi</a>
+ * @since Oct 20, 2016
+ */
+public class TileRegistryBenchmark {
+
+    private static final int[] VISIBLE_TILES = {100, 300, 600};
+    private static final int COLUMNS = 20;
+    private static final int FRAMES = 2000;
+
+    @Before
+    public void setUp() {
+        assumeTrue(Boolean.getBoolean("pdfview.benchmark"));
+    }
+
+    @Test
+    public void registry() {
+        // warm up the JIT
+        runList(300);
+        runMap(300);
+        for (int visible : VISIBLE_TILES) {
+            long list = runList(visible);
+            long map = runMap(visible);
+            System.out.println(String.format(Locale.US,
+                    "%d tiles: ArrayList %.1f us/frame, LongHashMap %.1f us/frame, %.1fx",
+                    visible, list / 1e3 / FRAMES, map / 1e3 / FRAMES, (double) list / map));
+        }
+    }
+
+    private long runList(int visible) {
+        List<Tile> rendered = new ArrayList<>();
+        List<Tile> desired = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            desired.clear();
+            fillWindow(desired, frame, visible);
+            for (int i = rendered.size() - 1; i >= 0; i--) {
+                if(!desired.contains(rendered.get(i))) {
+                    rendered.remove(i);
+                }
+            }
+            for (Tile tile : desired) {
+                if(!rendered.contains(tile)) {
+                    rendered.add(tile);
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals(visible, rendered.size());
+        return elapsed;
+    }
+
+    private long runMap(int visible) {
+        LongHashMap<Tile> rendered = new LongHashMap<>();
+        LongHashMap<Tile> desired = new LongHashMap<>();
+        List<Tile> window = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            window.clear();
+            fillWindow(window, frame, visible);
+            desired.clear();
+            for (int i = 0; i < window.size(); i++) {
+                Tile tile = window.get(i);
+                desired.put(tile.key, tile);
+            }
+            for (int i = 0; i < rendered.capacity(); i++) {
+                Tile tile = rendered.valueAt(i);
+                if(tile != null && desired.get(tile.key) == null) {
+                    rendered.remove(tile.key);
+                }
+            }
+            for (int i = 0; i < window.size(); i++) {
+                Tile tile = window.get(i);
+                if(rendered.get(tile.key) == null) {
+                    rendered.put(tile.key, tile);
+                }
+            }
+        }
+        long elapsed = System.nanoTime() - start;
+        assertEquals(visible, rendered.size());
+        return elapsed;
+    }
+
+    /**
+     * Adds tiles of the viewport that starts {@code frame} rows down the page.
+     */
+    private static void fillWindow(List<Tile> window, int frame, int visible) {
+        for (int i = 0; i < visible; i++) {
+            window.add(new Tile(0, i % COLUMNS, frame + i / COLUMNS));
+        }
+    }
+
+    private static class Tile {
+
+        final long key;
+
+        Tile(int page, int column, int row) {
+            key = ((long) page << 32) | ((long) column << 16) | row;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Tile && ((Tile) o).key == key;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (key ^ (key >>> 32));
+        }
+    }
+}